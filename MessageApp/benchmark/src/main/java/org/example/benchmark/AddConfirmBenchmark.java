@@ -0,0 +1,115 @@
+package org.example.benchmark;
+
+import org.example.GroupCommitWriter;
+import org.example.MessageStore;
+import org.example.ServerDatabaseManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One add followed by its confirm, from 16 concurrent callers, against the SQLite engine. groupCommit goes
+// through the GroupCommitWriter and the long-lived connection like the board does; connectPerCall repeats
+// what ServerDatabaseManager used to do: a fresh connection with synchronous = FULL for every statement.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddConfirmBenchmark {
+    private static final byte[] VALUE = new byte[256];
+
+    private final AtomicLong nextIdx = new AtomicLong();
+    private Path dir;
+    private ServerDatabaseManager store;
+    private GroupCommitWriter writer;
+    private String baselineUrl;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        dir = Files.createTempDirectory("add-confirm-benchmark");
+        store = new ServerDatabaseManager(dir.resolve("group.db").toString());
+        store.initialize();
+        writer = new GroupCommitWriter(store);
+
+        baselineUrl = "jdbc:sqlite:" + dir.resolve("baseline.db");
+        try (Connection conn = DriverManager.getConnection(baselineUrl); Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS bulletin_board (
+                        cell_index INTEGER NOT NULL,
+                        board_capacity INTEGER NOT NULL,
+                        message_tag TEXT PRIMARY KEY,
+                        message_value BLOB NOT NULL
+                    )""");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.shutdown();
+        store.close();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public void groupCommit() {
+        long idx = nextIdx.incrementAndGet();
+        String tag = "tag-" + idx;
+        writer.save(new MessageStore.PersistedMessage(idx, (int) (idx & 1023), 1024, tag, VALUE));
+        writer.delete(idx, tag);
+    }
+
+    @Benchmark
+    public void connectPerCall() throws SQLException {
+        long idx = nextIdx.incrementAndGet();
+        String tag = "tag-" + idx;
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO bulletin_board(cell_index, board_capacity, message_tag, message_value) VALUES(?,?,?,?)")) {
+            stmt.setInt(1, (int) (idx & 1023));
+            stmt.setInt(2, 1024);
+            stmt.setString(3, tag);
+            stmt.setBytes(4, VALUE);
+            stmt.executeUpdate();
+        }
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM bulletin_board WHERE message_tag = ?")) {
+            stmt.setString(1, tag);
+            stmt.executeUpdate();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection conn = DriverManager.getConnection(baselineUrl);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA synchronous = FULL;");
+        }
+        return conn;
+    }
+}
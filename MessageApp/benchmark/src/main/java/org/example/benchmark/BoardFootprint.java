@@ -0,0 +1,75 @@
+package org.example.benchmark;
+
+import org.example.BulletinBoardImpl;
+import org.example.CheckoutLeaseStore;
+import org.example.Encryption;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Memory kept per stored message by the bucket layout picked with -Dbulletin.buckets=map|offheap. A footprint
+// is not something JMH measures, so this is a plain main class:
+//   java -Dbulletin.buckets=offheap -cp benchmark/target/benchmarks.jar org.example.benchmark.BoardFootprint [messages]
+// It fills a board through the replication path, which skips the proof of work, with a store that keeps
+// nothing, and prints the growth of the heap and of the resident set (which includes off-heap memory).
+public class BoardFootprint {
+    private static final byte[] VALUE = new byte[64];
+
+    static void main(String[] args) throws IOException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        String layout = System.getProperty("bulletin.buckets", "map");
+        // Hashing the preimages would show up in the numbers, so it happens before the baseline is taken
+        String[] tags = new String[messages];
+        for (int i = 0; i < messages; i++) {
+            tags[i] = Encryption.preimageToTag("message-" + i);
+        }
+
+        Path dir = Files.createTempDirectory("board-footprint");
+        CheckoutLeaseStore leases = new CheckoutLeaseStore(dir.resolve("leases.db").toString());
+        leases.initialize();
+        BulletinBoardImpl board = new BulletinBoardImpl(new DiscardingStore(), leases);
+
+        long heapBefore = usedHeap();
+        long rssBefore = residentSetSize();
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            board.applyReplicatedAdd(i, tags[i], VALUE);
+        }
+        long fillNanos = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+        long rssAfter = residentSetSize();
+
+        System.out.printf("%s layout, %d messages of %d bytes%n", layout, messages, VALUE.length);
+        System.out.printf("  heap:         %,d bytes per message%n", (heapAfter - heapBefore) / messages);
+        if (rssBefore >= 0) {
+            System.out.printf("  resident set: %,d bytes per message%n", (rssAfter - rssBefore) / messages);
+        }
+        System.out.printf("  fill:         %,d ns per message%n", fillNanos / messages);
+
+        board.shutdown();
+        leases.close();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // VmRSS from /proc, or -1 where there is none
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return -1;
+    }
+}
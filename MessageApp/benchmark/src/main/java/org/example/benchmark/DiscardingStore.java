@@ -0,0 +1,38 @@
+package org.example.benchmark;
+
+import org.example.MessageStore;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Hands out locators and stores nothing, so only the board's own work and memory are measured
+final class DiscardingStore implements MessageStore {
+    private final AtomicLong nextLocator = new AtomicLong();
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public long[] writeBatch(List<PersistedMessage> saves, List<String> deleteTags, List<Relocation> relocations) {
+        long[] locators = new long[saves.size()];
+        for (int i = 0; i < locators.length; i++) {
+            locators[i] = nextLocator.incrementAndGet();
+        }
+        return locators;
+    }
+
+    @Override
+    public void streamMessages(int partition, int partitionCount, boolean withValues, Consumer<PersistedMessage> consumer) {
+    }
+
+    @Override
+    public byte[] readValue(String messageTag, long locator) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
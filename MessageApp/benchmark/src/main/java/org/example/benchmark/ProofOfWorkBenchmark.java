@@ -0,0 +1,86 @@
+package org.example.benchmark;
+
+import org.example.CancellationToken;
+import org.example.Encryption;
+import org.example.ProofOfWork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// The proof-of-work hashing on one thread. search finds a proof at SEARCH_BITS, about 2^SEARCH_BITS attempts
+// on average, so the hash rate is that count divided by the time per operation. verify checks one proof like
+// the server does on every add. The allocating variants repeat what ProofOfWork did before its hashing was
+// made allocation-free: fresh ByteBuffers and a fresh digest array per attempt, and a getInstance per verify.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProofOfWorkBenchmark {
+    private static final int SEARCH_BITS = 12;
+
+    private final String tag = Encryption.preimageToTag("proof-of-work-benchmark");
+    private final long idx = 42;
+    private final CancellationToken token = new CancellationToken();
+
+    @Benchmark
+    public long search() {
+        return ProofOfWork.computeProof(tag, idx, SEARCH_BITS, 1, token).nonce();
+    }
+
+    @Benchmark
+    public long allocatingSearch() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
+        byte[] idxBytes = ByteBuffer.allocate(Long.BYTES).putLong(idx).array();
+        for (long nonce = ThreadLocalRandom.current().nextLong(); ; nonce++) {
+            digest.reset();
+            digest.update(tagBytes);
+            digest.update(idxBytes);
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(nonce).array());
+            if (hasLeadingZeros(digest.digest(), SEARCH_BITS)) {
+                return nonce;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return ProofOfWork.verifyProof(tag, idx, ThreadLocalRandom.current().nextLong());
+    }
+
+    @Benchmark
+    public boolean allocatingVerify() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(tag.getBytes(StandardCharsets.UTF_8));
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(idx).array());
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(ThreadLocalRandom.current().nextLong()).array());
+        return hasLeadingZeros(digest.digest(), ProofOfWork.DIFFICULTY_BITS);
+    }
+
+    // The byte-at-a-time check the allocating variants used
+    private static boolean hasLeadingZeros(byte[] hash, int numBits) {
+        int fullBytes = numBits / 8;
+        for (int i = 0; i < fullBytes; i++) {
+            if (hash[i] != 0) {
+                return false;
+            }
+        }
+        int remainingBits = numBits % 8;
+        return remainingBits == 0 || (hash[fullBytes] & (0xFF << (8 - remainingBits))) == 0;
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.benchmark;
+
+import org.example.AdmissionControlledBoard;
+import org.example.BulletinBoard;
+import org.example.BulletinBoardImpl;
+import org.example.CheckoutLeaseStore;
+import org.example.FrameCodec;
+import org.example.FramedServer;
+import org.example.GetRequest;
+import org.example.RequestExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+
+// Round trip of a get that finds nothing, from 16 concurrent callers over loopback, so the transport is most
+// of what is measured. rmi calls the board through its RMI stub; framed sends the same request as a frame to
+// the FramedServer, one blocking connection per caller. Both reach the board through the admission gate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(16)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+    private Path dir;
+    private CheckoutLeaseStore leases;
+    private BulletinBoardImpl board;
+    private AdmissionControlledBoard exported;
+    private BulletinBoard stub;
+    private FramedServer framedServer;
+    private int port;
+
+    @State(Scope.Thread)
+    public static class Connection {
+        private final ByteBuffer length = ByteBuffer.allocate(FrameCodec.LENGTH_BYTES);
+        private SocketChannel channel;
+        private int nextRequestId;
+
+        @Setup
+        public void connect(TransportBenchmark benchmark) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress("localhost", benchmark.port));
+            channel.socket().setTcpNoDelay(true);
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        FrameCodec.Frame call(ByteBuffer request) throws IOException {
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            readFully(length.clear());
+            ByteBuffer body = ByteBuffer.allocate(length.flip().getInt());
+            readFully(body);
+            return FrameCodec.decode(body.flip());
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new EOFException("Server closed the connection");
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("transport-benchmark");
+        leases = new CheckoutLeaseStore(dir.resolve("leases.db").toString());
+        leases.initialize();
+        board = new BulletinBoardImpl(new DiscardingStore(), leases);
+        exported = new AdmissionControlledBoard(board, new RequestExecutor(256, 4096));
+        stub = (BulletinBoard) UnicastRemoteObject.exportObject(exported, 0);
+
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        framedServer = new FramedServer(exported, port);
+        framedServer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        framedServer.shutdown();
+        try {
+            UnicastRemoteObject.unexportObject(exported, true);
+        } catch (NoSuchObjectException e) {
+            // already gone
+        }
+        board.shutdown();
+        leases.close();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public Object rmi() throws RemoteException {
+        return stub.get(1, "missing");
+    }
+
+    @Benchmark
+    public Object framed(Connection connection) throws IOException {
+        ByteBuffer request = new FrameCodec.Writer(++connection.nextRequestId, FrameCodec.GET)
+                .putGetRequest(new GetRequest(1, "missing"))
+                .finish();
+        FrameCodec.Frame response = connection.call(request);
+        if (response.type() != FrameCodec.OK) throw new IllegalStateException("Server answered type " + response.type());
+        return response.payload();
+    }
+}
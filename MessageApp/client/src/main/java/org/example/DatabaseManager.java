@@ -449,5 +449,27 @@ public class DatabaseManager {
             throw new RuntimeException(e);
         }
     }
-}
 
+    // Deletes several pending confirmation entries in a single transaction
+    public void deletePendingConfirmations(List<Long> messageIds) {
+        if (messageIds.isEmpty()) return;
+        String sql = "DELETE FROM pending_confirmations WHERE message_id = ?";
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (long messageId : messageIds) {
+                    ps.setLong(1, messageId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            log.error("Failed to delete {} pending confirmations", messageIds.size(), e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -4,154 +4,364 @@ import com.google.protobuf.ByteString;
 import org.example.controller.ChatCore;
 import org.example.crypto.ChatCrypto;
 import org.example.proto.ChatProto;
+import org.example.transport.AsyncBulletinBoard;
+import org.example.transport.FramedBoardClient;
+import org.example.transport.ServerHealth;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
-
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 // Processes outgoing and incoming messages using RMI to communicate with BulletinBoard servers.
-public class InAndOutBox implements Runnable {
+public class InAndOutBox {
     private static final Logger log = LoggerFactory.getLogger(InAndOutBox.class);
     private final ChatCore chatCore;
     private final DatabaseManager databaseManager;
     private volatile boolean running = false;
-    private Thread thread;
+    // Cancelled on stop, so a proof-of-work search in progress does not hold up shutdown
+    private volatile CancellationToken proofCancellation = new CancellationToken();
+    // Proofs for each chat's next send, solved while the outbox is idle
+    private final ProofPrecomputer proofPrecomputer = new ProofPrecomputer();
     private final Random random = new Random();
-    private final ReentrantLock outboxLock = new ReentrantLock();
     private final ReentrantLock inboxLock = new ReentrantLock();
 
-    private static final int[] RMI_PORTS = {1099, 1100};
-    private static final int NUM_SERVERS = RMI_PORTS.length;
+    // Which server holds which index
+    private final ShardMap shardMap;
+    // Kept short so a chat switch is picked up quickly; the server caps waits at 25 s anyway
+    private static final long ACTIVE_CHAT_WAIT_MS = 5000;
+
+    // Transport to the servers: "rmi" (default) or "nio" for the framed binary protocol on port + 1000
+    private static final String TRANSPORT = System.getProperty("bulletin.transport", "rmi");
+    private static final int FRAMED_PORT_OFFSET = 1000;
+
+    // Read replicas per primary, "primary=replica,..." (see -Dbulletin.replicas). Gets and confirms go to the
+    // replica while the primary's circuit is open, and slow gets are hedged to it; adds always go to the primary.
+    private static final Map<ShardMap.Shard, ShardMap.Shard> REPLICAS = parseReplicas(System.getProperty("bulletin.replicas", ""));
+    // A get that takes longer than the primary's p95 (but at least this long) is also sent to the replica
+    private static final long MIN_HEDGE_DELAY_MS = 10;
+    private static final long DEFAULT_HEDGE_DELAY_MS = 1000;
+    // Hedges may block connecting to the replica, so they get a virtual thread each instead of running on the
+    // common pool or on the thread that completed the primary's call (the framed client's reader, for one)
+    private static final Executor HEDGES = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Hedge-", 0).factory());
+
+    // Cache for RMI stubs (or framed clients), and how each server has been answering
+    private final Map<ShardMap.Shard, BulletinBoard> bulletinBoardStubs = new ConcurrentHashMap<>();
+    private final ServerHealth health = new ServerHealth();
+
+    // A connected server, together with the shard it was connected as
+    private record Endpoint(ShardMap.Shard shard, BulletinBoard board) {}
+
+    // Proof-of-work difficulty per server, fetched again after DIFFICULTY_TTL_MS or when an add is refused
+    private static final long DIFFICULTY_TTL_MS = 10_000;
+    private record KnownDifficulty(int bits, long fetchedAt) {}
+    private final Map<ShardMap.Shard, KnownDifficulty> difficulties = new ConcurrentHashMap<>();
+
+    // --- Scheduling ---
+    // All work runs as scheduler items that wake on events: a new outbox row, a chat switch, a push notification
+    // or a fetched message. Timers are only left for retries after failures and the push fallback poll.
+    // A chat gets an item of its own while it is active, so its long poll never waits behind background work,
+    // nor behind the wait of the chat that was active before.
+    private final MessageScheduler scheduler = new MessageScheduler();
+    private final MessageScheduler.WorkItem outbox = scheduler.add("Outbox", this::runOutbox);
+    private final MessageScheduler.WorkItem backgroundInbox = scheduler.add("Background inbox", this::runBackgroundInbox);
+    private final Map<String, MessageScheduler.WorkItem> activeChatInboxes = new ConcurrentHashMap<>();
+    private final MessageScheduler.WorkItem confirmations = scheduler.add("Confirmations", this::runConfirmations);
+    private final Backoff outboxBackoff = new Backoff();
+    private final Backoff inboxBackoff = new Backoff();
+    private final Backoff confirmBackoff = new Backoff();
+    // A burst of fetched messages is confirmed in one batch
+    private static final long CONFIRM_DELAY_MS = 500;
+    // Retry interval for the active chat's long poll when it could not be made
+    private static final long ACTIVE_RETRY_MS = 300;
+    private static final long SHUTDOWN_WAIT_MS = 5000;
+
+    // Exponential backoff from 1 s to 8 s, plus up to a second of jitter. Each one is only used by one work item.
+    private final class Backoff {
+        private long nextMs = 1000;
+
+        long next() {
+            long delay = nextMs + random.nextInt(1000);
+            nextMs = Math.min(nextMs * 2, 8000);
+            return delay;
+        }
 
-    // Cache for RMI stubs
-    private final Map<String, BulletinBoard> bulletinBoardStubs = new HashMap<>();
+        void reset() {
+            nextMs = 1000;
+        }
+    }
 
-    public InAndOutBox(ChatCore chatCore, DatabaseManager databaseManager) {
+    // --- Push Delivery ---
+    // Servers call this listener when a subscribed tag arrives, which wakes the background inbox. Without
+    // notifications the inbox only polls every PUSH_FALLBACK_POLL_MS, as a safety net for dropped callbacks.
+    private static final long PUSH_FALLBACK_POLL_MS = 60_000;
+    private final InboxDeliveryListener deliveryListener = new InboxDeliveryListener();
+    private DeliveryListener deliveryListenerStub;
+    // Tag hashes with a live subscription, per server
+    private final Map<ShardMap.Shard, Set<String>> subscribedTags = new ConcurrentHashMap<>();
+
+    private class InboxDeliveryListener implements DeliveryListener {
+        @Override
+        public void messagesAvailable(List<String> tags) {
+            subscribedTags.values().forEach(subscribed -> tags.forEach(subscribed::remove));
+            log.info("PUSH: Notified of {} new message(s)", tags.size());
+            backgroundInbox.wake();
+        }
+    }
+
+    public InAndOutBox(ChatCore chatCore, DatabaseManager databaseManager, ShardMap shardMap) {
         this.chatCore = chatCore;
         this.databaseManager = databaseManager;
+        this.shardMap = shardMap;
     }
     
     public void start() {
         if (running) return;
         running = true;
-        thread = new Thread(this, "Outbox-Inbox-Processor-Thread");
-        thread.start();
+        proofCancellation = new CancellationToken();
+        try {
+            deliveryListenerStub = (DeliveryListener) UnicastRemoteObject.exportObject(deliveryListener, 0);
+        } catch (RemoteException e) {
+            log.warn("Could not export the delivery listener, falling back to polling.", e);
+        }
+        scheduler.start();
+        activeChatChanged();
         log.info("Message processor started.");
     }
 
-    // Stops the message processing thread gracefully.
+    // Stops the message processing gracefully.
     public void stop() {
         running = false;
+        scheduler.shutdown();
+        proofCancellation.cancel();
+        proofPrecomputer.clear();
+        unsubscribeAll();
         disconnect();
-        if (thread != null) {
-            thread.interrupt();
-        }
         log.info("Message processor stopping.");
     }
-    
-    // Waits for the processing thread to finish.
+
+    // Waits for the work in progress to finish.
     public void join() {
         try {
-            if (thread != null) {
-                thread.join();
-            }
+            scheduler.awaitTermination(SHUTDOWN_WAIT_MS);
         } catch (InterruptedException e) {
             log.warn("Interrupted while waiting for message processor to stop.", e);
             Thread.currentThread().interrupt();
         }
     }
 
-    // Exponential backoff loop for processing outbox messages.
-    private void processOutbox() {
-        long currentBackoff = 1000;
-        final int maxBackoff = 8000;
+    // --- Events ---
 
-        while (running) {
-            if (!processOneOutboxMessageSafely()) {
-                long sleepTime = currentBackoff + random.nextInt(1000);
-                currentBackoff = Math.min(currentBackoff * 2, maxBackoff);
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            } else {
-                currentBackoff = 1000; // Reset backoff on success
-            }
+    // A message was added to the outbox.
+    public void outboxChanged() {
+        outbox.wake();
+    }
+
+    // The user switched chats. The previously active chat goes back to the background inbox.
+    public void activeChatChanged() {
+        String activeChatUuid = chatCore.getActiveChatUuid();
+        // Only the active chat keeps an inbox item; the one of a chat left behind is cancelled, and a long poll
+        // it is still in returns on its own
+        activeChatInboxes.entrySet().removeIf(entry -> {
+            if (entry.getKey().equals(activeChatUuid)) return false;
+            entry.getValue().cancel();
+            return true;
+        });
+        if (activeChatUuid != null) {
+            activeChatInboxes.computeIfAbsent(activeChatUuid,
+                    uuid -> scheduler.add("Inbox of " + uuid, () -> runActiveInbox(uuid))).wake();
+        }
+        backgroundInbox.wake();
+    }
+
+    // A chat was created: it needs a subscription, and a proof for its first send.
+    public void chatsChanged() {
+        backgroundInbox.wake();
+        outbox.wake();
+    }
+
+    // --- Work items ---
+
+    // Sends pending messages until the outbox is empty. Once it is, solves proofs for the next sends and
+    // waits for a new message; while sends fail it retries with backoff.
+    private long runOutbox() {
+        if (processOutboxMessagesSafely()) {
+            outboxBackoff.reset();
+            return 0;
+        }
+        precomputeProofs();
+        if (databaseManager == null || databaseManager.getPendingOutboxMessages().isEmpty()) {
+            outboxBackoff.reset();
+            return MessageScheduler.IDLE;
         }
+        return outboxBackoff.next();
     }
 
-    // Exponential backoff loop for processing background inbox messages.
-    private void processInbox() {
-        long currentBackoff = 1000;
-        final int maxBackoff = 8000;
+    // Fetches background chats until nothing new arrives. Then subscribes the chats' next tags and waits for a
+    // server to notify it; if subscribing fails it falls back to exponential backoff polling.
+    private long runBackgroundInbox() {
+        if (processBackgroundInboxMessages()) {
+            inboxBackoff.reset();
+            return 0;
+        }
+        if (subscribeBackgroundChats()) {
+            inboxBackoff.reset();
+            return PUSH_FALLBACK_POLL_MS;
+        }
+        return inboxBackoff.next();
+    }
 
-        while (running) {
-            if (!processBackgroundInboxMessages()) {
-                long sleepTime = currentBackoff + random.nextInt(1000);
-                currentBackoff = Math.min(currentBackoff * 2, maxBackoff);
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            } else {
-                currentBackoff = 1000; // Reset backoff on success
-            }
+    // Long-polls the server for a chat, again and again while it is the active one. Each wait returns as soon
+    // as a message is added, so messages are delivered at once. Goes idle once the chat is switched away from,
+    // and waits out the backoff of a poisoned chat.
+    private long runActiveInbox(String chatUuid) {
+        if (databaseManager == null || !chatUuid.equals(chatCore.getActiveChatUuid())) return MessageScheduler.IDLE;
+
+        Optional<ChatState> chatOpt = chatCore.getChatStateByRecipientUuid(chatUuid);
+        if (chatOpt.isEmpty() || !chatOpt.get().canReceive()) return MessageScheduler.IDLE;
+
+        ChatState chat = chatOpt.get();
+        if (chat.isPoisoned()) {
+            return Math.max(chat.poisonedBackoffUntil - System.currentTimeMillis(), 1);
+        }
+        return waitForActiveChatMessage(chat) ? 0 : ACTIVE_RETRY_MS + random.nextInt(200);
+    }
+
+    // Confirms fetched messages. Runs after fetches; retries with backoff while confirmations are left over.
+    private long runConfirmations() {
+        processConfirmationsSafely();
+        if (databaseManager == null || databaseManager.getUnconfirmedMessages().isEmpty()) {
+            confirmBackoff.reset();
+            return MessageScheduler.IDLE;
         }
+        return confirmBackoff.next();
     }
 
-    // Low-latency loop for processing the active inbox.
-    private void processActiveInbox() {
-        final int baseInterval = 300;  // Base polling interval in ms
-        final int maxJitter = 200;     // Maximum jitter in ms
+    // Subscribes the next tag of every background chat that is not subscribed yet. Returns true if every server
+    // took the subscriptions, so the inbox can rely on notifications.
+    private boolean subscribeBackgroundChats() {
+        if (databaseManager == null || deliveryListenerStub == null) return false;
 
-        while (running) {
-            processActiveChatMessage();
+        String activeChatUuid = chatCore.getActiveChatUuid();
+        Map<ShardMap.Shard, List<String>> newTagsByShard = new HashMap<>();
+        for (ChatState chat : chatCore.getActiveChatsSnapshot()) {
+            if (chat.getRecipientUuid().equals(activeChatUuid) || !chat.canReceive() || chat.isPoisoned()) {
+                continue;
+            }
+            ShardMap.Shard shard = readShardFor(shardMap.shardFor(chat.recvIdx));
+            String tag = Encryption.preimageToTag(chat.recvTag);
+            if (!subscribedTags.computeIfAbsent(shard, s -> ConcurrentHashMap.newKeySet()).contains(tag)) {
+                newTagsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(tag);
+            }
+        }
 
-            // Low latency with small jitter
-            int sleepTime = baseInterval + random.nextInt(maxJitter);
+        boolean allSubscribed = true;
+        for (Map.Entry<ShardMap.Shard, List<String>> entry : newTagsByShard.entrySet()) {
+            Optional<Endpoint> endpointOpt = ensureConnectedForRead(entry.getKey());
+            if (endpointOpt.isEmpty()) {
+                allSubscribed = false;
+                continue;
+            }
+            Endpoint endpoint = endpointOpt.get();
+            Set<String> subscribed = subscribedTags.computeIfAbsent(endpoint.shard(), s -> ConcurrentHashMap.newKeySet());
             try {
-                Thread.sleep(sleepTime);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+                // Marked first, so a notification racing with the call still clears the tag
+                subscribed.addAll(entry.getValue());
+                if (!endpoint.board().subscribe(entry.getValue(), deliveryListenerStub)) {
+                    entry.getValue().forEach(subscribed::remove);
+                    allSubscribed = false;
+                }
+                health.recordSuccess(endpoint.shard());
+            } catch (RemoteException e) {
+                log.warn("RMI ERROR while subscribing to new messages on {}. Falling back to polling.", endpoint.shard());
+                failed(endpoint);
+                allSubscribed = false;
             }
         }
+        return allSubscribed;
     }
 
-    // Processes messages for the currently active chat.
-    private void processActiveChatMessage() {
-        if (databaseManager == null) return;
-
-        Optional<ChatState> activeChatOpt = chatCore.getActiveChatState();
-        if (activeChatOpt.isEmpty()) return;
+    // Drops our subscriptions on every connected server and stops accepting callbacks.
+    private void unsubscribeAll() {
+        if (deliveryListenerStub == null) return;
+        for (BulletinBoard bulletinBoard : bulletinBoardStubs.values()) {
+            try {
+                bulletinBoard.unsubscribe(deliveryListenerStub);
+            } catch (RemoteException e) {
+                log.debug("Could not unsubscribe from a server, it will drop the listener on its own.");
+            }
+        }
+        subscribedTags.clear();
+        try {
+            UnicastRemoteObject.unexportObject(deliveryListener, true);
+        } catch (NoSuchObjectException e) {
+            // already unexported
+        }
+        deliveryListenerStub = null;
+    }
 
-        ChatState activeChat = activeChatOpt.get();
-        if (!activeChat.canReceive() || activeChat.isPoisoned()) return;
+    // Waits on the server for the next message of the active chat. The wait happens without the inbox lock;
+    // only processing the result takes it. Returns false if no wait could be made.
+    private boolean waitForActiveChatMessage(ChatState activeChat) {
+        Optional<Endpoint> endpointOpt = ensureConnectedForRead(shardMap.shardFor(activeChat.recvIdx));
+        if (endpointOpt.isEmpty()) return false;
 
-        // Try to lock, if busy skip this cycle
-        if (!inboxLock.tryLock()) return;
+        Endpoint endpoint = endpointOpt.get();
+        long currentRecvIdx = activeChat.recvIdx;
+        String currentRecvTag = activeChat.recvTag;
+        Pair pair;
+        try {
+            pair = endpoint.board().getOrWait(currentRecvIdx, currentRecvTag, ACTIVE_CHAT_WAIT_MS);
+            health.recordSuccess(endpoint.shard()); // a wait's duration says nothing about the server
+        } catch (RemoteException e) {
+            log.warn("RMI ERROR while waiting for messages of {}. Server {} unavailable. Will retry later.", activeChat.recipient, endpoint.shard());
+            failed(endpoint);
+            return false;
+        }
+        if (pair == null) return true; // nothing arrived, wait again
 
+        inboxLock.lock();
         try {
-            fetchAndProcessMessage(activeChat);
+            if (activeChat.recvIdx != currentRecvIdx) {
+                // Not confirmed, so the server hands it out again once the checkout times out
+                log.warn("INBOX FETCH: Receive state of {} moved on during the wait. Dropping fetched message.", activeChat.recipient);
+                return true;
+            }
+            processFetchedMessage(activeChat, pair, currentRecvIdx);
         } finally {
             inboxLock.unlock();
         }
+        return true;
     }
 
-    // Processes inbox messages for all non-active chats.
+    // Processes inbox messages for all non-active chats, with one batched get per server. The gets to
+    // different servers are all issued before waiting on any of them.
     private boolean processBackgroundInboxMessages() {
         if (databaseManager == null) return false;
 
@@ -159,18 +369,27 @@ public class InAndOutBox implements Runnable {
 
         try {
             String activeChatUuid = chatCore.getActiveChatUuid();
-            boolean didWork = false;
+            Map<ShardMap.Shard, List<ChatState>> chatsByShard = new HashMap<>();
 
             for (ChatState chat : chatCore.getActiveChatsSnapshot()) {
-                // Skip the active chat (handled by fast polling)
+                // Skip the active chat (handled by its own long poll)
                 if (chat.getRecipientUuid().equals(activeChatUuid)) {
                     continue;
                 }
 
                 if (chat.canReceive() && !chat.isPoisoned()) {
-                    if (fetchAndProcessMessage(chat)) {
-                        didWork = true;
-                    }
+                    chatsByShard.computeIfAbsent(shardMap.shardFor(chat.recvIdx), s -> new ArrayList<>()).add(chat);
+                }
+            }
+
+            List<BatchFetch> fetches = new ArrayList<>();
+            for (List<ChatState> chats : chatsByShard.values()) {
+                startBatchFetch(chats).ifPresent(fetches::add);
+            }
+            boolean didWork = false;
+            for (BatchFetch fetch : fetches) {
+                if (finishBatchFetch(fetch)) {
+                    didWork = true;
                 }
             }
             return didWork;
@@ -179,109 +398,268 @@ public class InAndOutBox implements Runnable {
         }
     }
 
-    // Clears all RMI connections.
-    private void disconnect() {
-        bulletinBoardStubs.clear();
-        log.info("All RMI connections disconnected.");
+    // A batched get that is on its way to one server
+    private record BatchFetch(List<ChatState> chats, List<GetRequest> requests, CompletableFuture<List<Pair>> pairs) {}
+
+    // Issues one batched get for the next message of several chats that live on the same server.
+    private Optional<BatchFetch> startBatchFetch(List<ChatState> chats) {
+        List<GetRequest> requests = new ArrayList<>(chats.size());
+        for (ChatState chat : chats) {
+            requests.add(new GetRequest(chat.recvIdx, chat.recvTag));
+        }
+
+        log.info("INBOX FETCH: Batched receive for {} chat(s)", chats.size());
+        return hedgedRead(shardMap.shardFor(chats.getFirst().recvIdx), board -> board.getBatchAsync(requests),
+                        pairs -> pairs.stream().allMatch(Objects::nonNull))
+                .map(pairs -> new BatchFetch(chats, requests, pairs));
     }
 
-    // Main processing loop with exponential backoff for confirmations.
-    @Override
-    public void run() {
-        long currentBackoff = 1000;
-        final int maxBackoff = 8000;
-        final int baseSleep = 500;
+    // Waits for a batched get and processes the messages it returned.
+    private boolean finishBatchFetch(BatchFetch fetch) {
+        List<ChatState> chats = fetch.chats();
+        List<GetRequest> requests = fetch.requests();
+        List<Pair> pairs;
+        try {
+            pairs = AsyncBulletinBoard.await(fetch.pairs());
+        } catch (RemoteException e) {
+            log.warn("RMI ERROR during batched inbox fetch. Server unavailable. Will retry later.");
+            return false;
+        }
 
-        new Thread(this::processOutbox, "Outbox-Processor-Thread").start();
-        new Thread(this::processInbox, "Background-Inbox-Processor-Thread").start();
-        new Thread(this::processActiveInbox, "Active-Inbox-Processor-Thread").start();
+        boolean didWork = false;
+        for (int i = 0; i < chats.size(); i++) {
+            Pair pair = pairs.get(i);
+            if (pair != null && processFetchedMessage(chats.get(i), pair, requests.get(i).idx())) {
+                didWork = true;
+            }
+        }
+        return didWork;
+    }
 
-        while (running) {
-            boolean didWork = false;
+    // Counts a failed call against the server and forgets only its connection. A server that restarted has
+    // also lost our subscriptions.
+    private void failed(Endpoint endpoint) {
+        health.recordFailure(endpoint.shard());
+        if (bulletinBoardStubs.remove(endpoint.shard(), endpoint.board())) {
+            close(endpoint.board());
+        }
+        subscribedTags.remove(endpoint.shard());
+    }
 
-            if (!running) break;
-            didWork = processOneConfirmationSafely();
+    // Clears all RMI connections.
+    private void disconnect() {
+        closeStubs();
+        log.info("All RMI connections disconnected.");
+    }
 
-            long sleepTime;
-            if (didWork) {
-                sleepTime = baseSleep;
-                currentBackoff = 1000; // Reset backoff on success
-            } else {
-                sleepTime = currentBackoff + random.nextInt(1000);
-                currentBackoff = Math.min(currentBackoff * 2, maxBackoff);
-            }
+    // Framed clients hold a socket, RMI stubs are simply forgotten.
+    private void closeStubs() {
+        bulletinBoardStubs.values().forEach(this::close);
+        bulletinBoardStubs.clear();
+    }
 
+    private void close(BulletinBoard bulletinBoard) {
+        if (bulletinBoard instanceof Closeable closeable) {
             try {
-                Thread.sleep(sleepTime);
-            } catch (InterruptedException e) {
-                break;
+                closeable.close();
+            } catch (IOException e) {
+                log.debug("Error closing a server connection", e);
             }
         }
     }
 
     // Ensures there is an RMI connection to the server responsible for the given index.
-    private Optional<BulletinBoard> ensureConnected(long requiredIndex) {
-        int targetPort = getPortForIndex(requiredIndex);
-        String targetHost = "localhost";
-        String targetHostPort = targetHost + ":" + targetPort;
+    private Optional<Endpoint> ensureConnected(long requiredIndex) {
+        return ensureConnected(shardMap.shardFor(requiredIndex));
+    }
+
+    private Optional<Endpoint> ensureConnected(ShardMap.Shard shard) {
+        String targetHost = shard.host();
+        int targetPort = shard.port();
+        String targetHostPort = shard.toString();
+
+        // While the circuit is open the server is not even tried
+        if (!health.allowRequest(shard)) return Optional.empty();
 
         // If we have a cached stub, return it.
-        if (bulletinBoardStubs.containsKey(targetHostPort)) {
-            return Optional.of(bulletinBoardStubs.get(targetHostPort));
+        BulletinBoard cached = bulletinBoardStubs.get(shard);
+        if (cached != null) {
+            return Optional.of(new Endpoint(shard, cached));
         }
 
         // If not connected, establish connection
         try {
-            Registry registry = LocateRegistry.getRegistry(targetHost, targetPort);
-            BulletinBoard bulletinBoard = (BulletinBoard) registry.lookup("BulletinBoard");
-            bulletinBoardStubs.put(targetHostPort, bulletinBoard);
-            log.info("RMI CONNECTION SUCCESS: BulletinBoard found and connected on: {}.", targetHostPort);
-            return Optional.of(bulletinBoard);
-        } catch (RemoteException | NotBoundException e) {
-            log.warn("RMI CONNECTION ERROR: BulletinBoard on {} not accessible or found, trying again later.", targetHostPort);
+            BulletinBoard bulletinBoard;
+            if (TRANSPORT.equals("nio")) {
+                bulletinBoard = FramedBoardClient.connect(targetHost, targetPort + FRAMED_PORT_OFFSET);
+            } else {
+                Registry registry = LocateRegistry.getRegistry(targetHost, targetPort);
+                bulletinBoard = (BulletinBoard) registry.lookup("BulletinBoard");
+            }
+            BulletinBoard raced = bulletinBoardStubs.putIfAbsent(shard, bulletinBoard);
+            if (raced != null) {
+                close(bulletinBoard);
+                return Optional.of(new Endpoint(shard, raced));
+            }
+            log.info("{} CONNECTION SUCCESS: BulletinBoard found and connected on: {}.", TRANSPORT.toUpperCase(), targetHostPort);
+            return Optional.of(new Endpoint(shard, bulletinBoard));
+        } catch (IOException | NotBoundException e) {
+            log.warn("{} CONNECTION ERROR: BulletinBoard on {} not accessible or found, trying again later.", TRANSPORT.toUpperCase(), targetHostPort);
+            health.recordFailure(shard);
             return Optional.empty();
         }
     }
 
-    // Immediately sends a pending message, bypassing the usual scheduling.
-    public void sendMessageImmediately(DatabaseManager.PendingMessage pending) {
-        outboxLock.lock();
-        try {
-            processMessage(pending);
-        } finally {
-            outboxLock.unlock();
+    // Issues a call and records its outcome in the server's health. A failure also drops the connection.
+    private <T> CompletableFuture<T> call(Endpoint endpoint, Function<AsyncBulletinBoard, CompletableFuture<T>> request) {
+        long start = System.nanoTime();
+        return request.apply(AsyncBulletinBoard.of(endpoint.board())).whenComplete((result, error) -> {
+            // A refusal for a stale difficulty is a valid answer from a healthy server
+            if (error == null || unwrap(error) instanceof DifficultyRaisedException) {
+                health.recordSuccess(endpoint.shard(), System.nanoTime() - start);
+            } else {
+                failed(endpoint);
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // Issues a read on the shard's primary (or its replica, while the primary's circuit is open). If the
+    // answer takes longer than the primary's p95 latency, or the call fails, the same read is sent to the
+    // replica and whichever answers first wins. A message checked out twice this way is still confirmed
+    // only once, and the confirm reaches both servers through replication. Gets are checkouts, though: a
+    // replica answer that misses messages (a lagging replica answers null) only wins while nothing else can,
+    // once the primary has failed. Otherwise the primary's checkout would be dropped and redelivered only
+    // after the checkout timeout. complete tells whether an answer has everything that was asked for.
+    private <T> Optional<CompletableFuture<T>> hedgedRead(ShardMap.Shard primary, Function<AsyncBulletinBoard, CompletableFuture<T>> request,
+                                                          Predicate<T> complete) {
+        Optional<Endpoint> endpointOpt = ensureConnectedForRead(primary);
+        if (endpointOpt.isEmpty()) return Optional.empty();
+
+        Endpoint endpoint = endpointOpt.get();
+        CompletableFuture<T> first = call(endpoint, request);
+        ShardMap.Shard replica = REPLICAS.get(primary);
+        if (replica == null || endpoint.shard().equals(replica)) return Optional.of(first);
+
+        long p95 = health.p95Millis(primary);
+        long delay = p95 < 0 ? DEFAULT_HEDGE_DELAY_MS : Math.max(p95, MIN_HEDGE_DELAY_MS);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicBoolean hedged = new AtomicBoolean();
+        Runnable hedge = () -> {
+            if (result.isDone() || !hedged.compareAndSet(false, true)) return;
+            Optional<Endpoint> replicaOpt = ensureConnected(replica);
+            if (replicaOpt.isEmpty()) {
+                first.whenComplete((value, error) -> { if (error != null) result.completeExceptionally(error); });
+                return;
+            }
+            log.debug("HEDGE: {} did not answer within {} ms, also asking replica {}", primary, delay, replica);
+            call(replicaOpt.get(), request).whenComplete((value, error) -> {
+                if (error == null && complete.test(value)) {
+                    result.complete(value);
+                } else if (error == null) {
+                    first.whenComplete((v, firstError) -> { if (firstError != null) result.complete(value); });
+                } else {
+                    first.whenComplete((v, firstError) -> { if (firstError != null) result.completeExceptionally(error); });
+                }
+            });
+        };
+        first.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else {
+                HEDGES.execute(hedge);
+            }
+        });
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, HEDGES).execute(hedge);
+        return Optional.of(result);
+    }
+
+    // The difficulty the server currently asks for, cached for DIFFICULTY_TTL_MS.
+    private int difficultyFor(Endpoint endpoint) throws RemoteException {
+        KnownDifficulty known = difficulties.get(endpoint.shard());
+        long now = System.currentTimeMillis();
+        if (known != null && now - known.fetchedAt() < DIFFICULTY_TTL_MS) {
+            return known.bits();
         }
+        int bits = endpoint.board().getDifficulty();
+        difficulties.put(endpoint.shard(), new KnownDifficulty(bits, now));
+        return bits;
     }
 
-    // Processes one outbox message safely with locking.
-    private boolean processOneOutboxMessageSafely() {
-        if (databaseManager == null) return false;
+    // Where gets and confirms for a shard go: its replica while the primary's circuit is open, otherwise the primary.
+    private ShardMap.Shard readShardFor(ShardMap.Shard primary) {
+        ShardMap.Shard replica = REPLICAS.get(primary);
+        return replica != null && !health.isAvailable(primary) ? replica : primary;
+    }
 
-        Optional<DatabaseManager.PendingMessage> pendingMessageOpt = databaseManager.getPendingOutboxMessages().stream().findFirst();
-        if (pendingMessageOpt.isEmpty()) return false;
+    // Like ensureConnected, but falls back to the shard's replica when the primary cannot be reached.
+    private Optional<Endpoint> ensureConnectedForRead(ShardMap.Shard primary) {
+        ShardMap.Shard target = readShardFor(primary);
+        Optional<Endpoint> endpointOpt = ensureConnected(target);
+        ShardMap.Shard replica = REPLICAS.get(primary);
+        if (endpointOpt.isPresent() || replica == null || target.equals(replica)) {
+            return endpointOpt;
+        }
+        log.warn("FAILOVER: Primary {} unreachable, reading from replica {}", primary, replica);
+        return ensureConnected(replica);
+    }
 
-        if (!outboxLock.tryLock()) return false;
+    private static Map<ShardMap.Shard, ShardMap.Shard> parseReplicas(String spec) {
+        Map<ShardMap.Shard, ShardMap.Shard> replicas = new HashMap<>();
+        for (String pair : spec.split(",")) {
+            if (pair.isBlank()) continue;
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected primary=replica, got: " + pair);
+            }
+            replicas.put(ShardMap.Shard.parse(parts[0].trim()), ShardMap.Shard.parse(parts[1].trim()));
+        }
+        return replicas;
+    }
 
-        try {
-            return processMessage(pendingMessageOpt.get());
-        } finally {
-            outboxLock.unlock();
+    // Sends the oldest pending message of every chat, all chats in parallel. Messages of one chat stay
+    // sequential, since each send moves that chat's send state forward; only the outbox item calls this.
+    private boolean processOutboxMessagesSafely() {
+        if (databaseManager == null) return false;
+
+        Map<String, DatabaseManager.PendingMessage> oldestPerChat = new LinkedHashMap<>();
+        for (DatabaseManager.PendingMessage pending : databaseManager.getPendingOutboxMessages()) {
+            oldestPerChat.putIfAbsent(pending.recipientUuid(), pending);
+        }
+        if (oldestPerChat.isEmpty()) return false;
+
+        List<OutboxSend> sends = new ArrayList<>();
+        for (DatabaseManager.PendingMessage pending : oldestPerChat.values()) {
+            startSend(pending).ifPresent(sends::add);
+        }
+        boolean didWork = false;
+        for (OutboxSend send : sends) {
+            if (finishSend(send)) {
+                didWork = true;
+            }
         }
+        return didWork;
     }
 
-    // Processes a single pending outbox message.
-    private boolean processMessage(DatabaseManager.PendingMessage pending) {
+    // An add that is on its way to the server, with the proposed next send state to apply once it succeeds
+    private record OutboxSend(DatabaseManager.PendingMessage pending, ChatState chat, ShardMap.Shard shard, long nextIdx,
+                              String nextTag, byte[] nextKeyBytes, CompletableFuture<Boolean> result) {}
+
+    // Prepares a pending message and issues its add without waiting for the answer.
+    private Optional<OutboxSend> startSend(DatabaseManager.PendingMessage pending) {
         Optional<ChatState> chatOptional = chatCore.getChatStateByRecipientUuid(pending.recipientUuid());
         if (chatOptional.isEmpty()) {
             log.error("Chat state not found for pending message to {}", pending.recipient());
-            return false;
+            return Optional.empty();
         }
         ChatState chat = chatOptional.get();
 
-        Optional<BulletinBoard> bulletinBoardOpt = ensureConnected(chat.sendIdx);
-        if (bulletinBoardOpt.isEmpty()) return false;
-
-        BulletinBoard bulletinBoard = bulletinBoardOpt.get();
+        Optional<Endpoint> endpointOpt = ensureConnected(chat.sendIdx);
+        if (endpointOpt.isEmpty()) return Optional.empty();
+        Endpoint endpoint = endpointOpt.get();
 
         try {
             // Two-Phase Send Logic for Idempotent Retries:
@@ -323,12 +701,34 @@ public class InAndOutBox implements Runnable {
 
             // Compute proof-of-work before sending
             log.info("OUTBOX PUSH: Computing proof-of-work for message to {} at idx {}", pending.recipient(), chat.sendIdx);
-            ProofOfWork.ProofResult powResult = ProofOfWork.computeProof(tagString, chat.sendIdx);
-            log.info("OUTBOX PUSH: Proof-of-work computed in {}ms (nonce={})", powResult.computationTimeMs(), powResult.nonce());
+            int difficultyBits = difficultyFor(endpoint);
+            ProofOfWork.ProofResult powResult = proofPrecomputer.solve(tagString, chat.sendIdx, difficultyBits, proofCancellation);
+            log.info("OUTBOX PUSH: Proof-of-work computed in {}ms at {} bits (nonce={})", powResult.computationTimeMs(), difficultyBits, powResult.nonce());
 
             log.info("OUTBOX PUSH: Trying to send to {} at idx {} with tag {}", pending.recipient(), chat.sendIdx, tagString);
 
-            boolean success = bulletinBoard.add(chat.sendIdx, encryptedPayload, tagString, powResult.nonce());
+            long sendIdx = chat.sendIdx;
+            CompletableFuture<Boolean> result = call(endpoint, board -> board.addAsync(sendIdx, encryptedPayload, tagString, powResult.nonce()));
+            return Optional.of(new OutboxSend(pending, chat, endpoint.shard(), nextIdx, nextTag, nextKeyBytes, result));
+        } catch (RemoteException e) {
+            log.warn("RMI ERROR while fetching the proof-of-work difficulty from {}. Will retry later.", endpoint.shard());
+            failed(endpoint);
+            return Optional.empty();
+        } catch (CancellationException e) {
+            log.info("OUTBOX PUSH: Proof-of-work for {} cancelled, message stays pending.", pending.recipient());
+            return Optional.empty();
+        } catch (Exception e) {
+            log.error("Failed to process outbox message for {}", pending.recipient(), e);
+            return Optional.empty();
+        }
+    }
+
+    // Waits for the add and, if the server took the message, moves the chat to its proposed send state.
+    private boolean finishSend(OutboxSend send) {
+        DatabaseManager.PendingMessage pending = send.pending();
+        ChatState chat = send.chat();
+        try {
+            boolean success = AsyncBulletinBoard.await(send.result());
 
             if (!success) {
                 log.warn("OUTBOX PUSH FAILED: Server returned false. Will retry later.");
@@ -338,19 +738,25 @@ public class InAndOutBox implements Runnable {
             log.info("OUTBOX PUSH SUCCESS: Message for {} sent.", pending.recipient());
 
             // Phase 3: Finalize - move proposed values to actual state
-            chat.sendIdx = nextIdx;
-            chat.sendTag = nextTag;
-            chat.sendKey = new javax.crypto.spec.SecretKeySpec(nextKeyBytes, "AES");
+            chat.sendIdx = send.nextIdx();
+            chat.sendTag = send.nextTag();
+            chat.sendKey = new javax.crypto.spec.SecretKeySpec(send.nextKeyBytes(), "AES");
 
-            databaseManager.markMessageAsSentAndUpdateState(pending.id(), chat.recipient, nextKeyBytes, chat.sendIdx, chat.sendTag);
+            databaseManager.markMessageAsSentAndUpdateState(pending.id(), chat.recipient, send.nextKeyBytes(), chat.sendIdx, chat.sendTag);
 
             // Notify UI to refresh and update the message status icon from pending to sent
             chatCore.notifyMessageUpdate();
 
+            precomputeProof(chat);
+
             return true;
+        } catch (DifficultyRaisedException e) {
+            // Solved for a difficulty the server no longer accepts; the retry solves for the one it sent
+            difficulties.put(send.shard(), new KnownDifficulty(e.requiredBits(), System.currentTimeMillis()));
+            log.warn("OUTBOX PUSH FAILED: Server now asks for {} bits. Will retry with a new proof.", e.requiredBits());
+            return false;
         } catch (RemoteException e) {
             log.warn("RMI ERROR during outbox push. Server may be offline. Will retry later.", e);
-            bulletinBoardStubs.clear();
             return false;
         } catch (Exception e) {
             log.error("Failed to process outbox message for {}", pending.recipient(), e);
@@ -358,48 +764,25 @@ public class InAndOutBox implements Runnable {
         }
     }
 
-    // Immediately fetches messages for the given chat, bypassing the usual scheduling.
-    public void fetchMessagesImmediately(ChatState chat) {
-        if (!inboxLock.tryLock()) {
-            log.warn("Skipping immediate fetch for {} as another fetch is in progress.", chat.recipient);
-            return;
-        }
-        try {
-            log.info("Starting immediate fetch for active chat: {}", chat.recipient);
-            final int maxMessagesToFetch = 10;
-            int fetchedCount = 0;
-            // Keep fetching as long as we are making progress and within the limit
-            while (fetchedCount < maxMessagesToFetch && fetchAndProcessMessage(chat)) {
-                fetchedCount++;
-                try {
-                    // Small delay to avoid spamming the server
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            log.info("Finished immediate fetch for {}. Fetched {} messages.", chat.recipient, fetchedCount);
-        } finally {
-            inboxLock.unlock();
+    // Queues background proofs for the next send of every chat that can send.
+    private void precomputeProofs() {
+        if (databaseManager == null) return;
+        for (ChatState chat : chatCore.getActiveChatsSnapshot()) {
+            precomputeProof(chat);
         }
     }
 
-    // Fetches and processes a single message for the given chat.
-    private boolean fetchAndProcessMessage(ChatState chat) {
-        Optional<BulletinBoard> bulletinBoardOpt = ensureConnected(chat.recvIdx);
-        if (bulletinBoardOpt.isEmpty()) return false;
-
-        BulletinBoard bulletinBoard = bulletinBoardOpt.get();
-        long currentRecvIdx = chat.recvIdx;
-        String currentRecvTag = chat.recvTag;
+    // The difficulty last seen for the chat's server is a guess; solve checks the proof against the real one.
+    private void precomputeProof(ChatState chat) {
+        if (!chat.canSend()) return;
+        KnownDifficulty known = difficulties.get(shardMap.shardFor(chat.sendIdx));
+        int bits = known != null ? known.bits() : ProofOfWork.DIFFICULTY_BITS;
+        proofPrecomputer.precompute(Encryption.preimageToTag(chat.sendTag), chat.sendIdx, bits);
+    }
 
+    // Decrypts a fetched message, advances the receive state and records the pending confirmation.
+    private boolean processFetchedMessage(ChatState chat, Pair pair, long currentRecvIdx) {
         try {
-            log.info("INBOX FETCH: Trying to receive for {} at recvIdx={} with tag={}", chat.recipient, currentRecvIdx, currentRecvTag);
-            Pair pair = bulletinBoard.get(currentRecvIdx, currentRecvTag);
-
-            if (pair == null) return false;
-
             log.info("INBOX FETCH: Message found for {}!", chat.recipient);
 
             byte[] payloadBytes = ChatCrypto.decryptPayloadBytes(pair.value(), chat.recvKey);
@@ -419,12 +802,9 @@ public class InAndOutBox implements Runnable {
             databaseManager.addReceivedMessageAndUpdateState(chat.recipient, chat.getRecipientUuid(), receivedMessage, currentRecvIdx, pair.tag(), newRecvKeyBytes, chat.recvIdx, chat.recvTag);
 
             chatCore.notifyMessageUpdate();
+            confirmations.wakeWithin(CONFIRM_DELAY_MS);
             return true;
 
-        } catch (RemoteException e) {
-            log.warn("RMI ERROR during inbox fetch for {}. Server unavailable. Will retry later.", chat.recipient);
-            bulletinBoardStubs.clear();
-            return false;
         } catch (Exception e) {
             log.error("Error during decryption or processing of received message for {}", chat.recipient, e);
             chat.poisonedBackoffUntil = System.currentTimeMillis() + (5 * 60 * 1000);
@@ -433,47 +813,73 @@ public class InAndOutBox implements Runnable {
         }
     }
 
-    // Processes one pending confirmation safely with locking.
-    private boolean processOneConfirmationSafely() {
+    // Confirms all pending receipts, with one batched confirm per server.
+    private boolean processConfirmationsSafely() {
         if (databaseManager == null) {
             return false;
         }
-        Optional<DatabaseManager.UnconfirmedMessage> unconfirmedOpt = databaseManager.getUnconfirmedMessages().stream().findFirst();
-        if (unconfirmedOpt.isEmpty()) {
+        List<DatabaseManager.UnconfirmedMessage> unconfirmed = databaseManager.getUnconfirmedMessages();
+        if (unconfirmed.isEmpty()) {
             return false; // No work to do
         }
-        DatabaseManager.UnconfirmedMessage unconfirmed = unconfirmedOpt.get();
 
-        Optional<BulletinBoard> bulletinBoardOpt = ensureConnected(unconfirmed.recvIdx());
-        if (bulletinBoardOpt.isEmpty()) {
-            return false; // Can't connect to server, will retry later
+        Map<ShardMap.Shard, List<DatabaseManager.UnconfirmedMessage>> byShard = new HashMap<>();
+        for (DatabaseManager.UnconfirmedMessage message : unconfirmed) {
+            byShard.computeIfAbsent(shardMap.shardFor(message.recvIdx()), s -> new ArrayList<>()).add(message);
+        }
+
+        // Send every server's batch first, then collect the answers
+        Map<List<DatabaseManager.UnconfirmedMessage>, CompletableFuture<boolean[]>> confirms = new LinkedHashMap<>();
+        for (List<DatabaseManager.UnconfirmedMessage> batch : byShard.values()) {
+            startConfirmBatch(batch).ifPresent(result -> confirms.put(batch, result));
+        }
+        boolean didWork = false;
+        for (Map.Entry<List<DatabaseManager.UnconfirmedMessage>, CompletableFuture<boolean[]>> confirm : confirms.entrySet()) {
+            if (finishConfirmBatch(confirm.getKey(), confirm.getValue())) {
+                didWork = true;
+            }
+        }
+        return didWork;
+    }
+
+    // Issues one confirmBatch call for messages that all live on the same server.
+    private Optional<CompletableFuture<boolean[]>> startConfirmBatch(List<DatabaseManager.UnconfirmedMessage> batch) {
+        Optional<Endpoint> endpointOpt = ensureConnectedForRead(shardMap.shardFor(batch.getFirst().recvIdx()));
+        if (endpointOpt.isEmpty()) {
+            return Optional.empty(); // Can't connect to server, will retry later
         }
-        BulletinBoard bulletinBoard = bulletinBoardOpt.get();
 
+        List<ConfirmRequest> requests = new ArrayList<>(batch.size());
+        for (DatabaseManager.UnconfirmedMessage message : batch) {
+            requests.add(new ConfirmRequest(message.recvIdx(), message.recvTag()));
+        }
+
+        log.info("INBOX CONFIRM: Trying to confirm receipt for {} message(s)", batch.size());
+        return Optional.of(call(endpointOpt.get(), board -> board.confirmBatchAsync(requests)));
+    }
+
+    // Waits for a confirmBatch call and drops the confirmed messages from the pending confirmations.
+    private boolean finishConfirmBatch(List<DatabaseManager.UnconfirmedMessage> batch, CompletableFuture<boolean[]> result) {
         try {
-            log.info("INBOX CONFIRM: Trying to confirm receipt for message with tag {}", unconfirmed.recvTag());
-            boolean success = bulletinBoard.confirm(unconfirmed.recvIdx(), unconfirmed.recvTag());
-            if (success) {
-                databaseManager.deletePendingConfirmation(unconfirmed.messageId());
-                log.info("INBOX CONFIRM: Successfully confirmed message with tag {}", unconfirmed.recvTag());
-                return true; // We did work
-            } else {
-                log.warn("INBOX CONFIRM: Server returned false for tag {}. Will retry.", unconfirmed.recvTag());
-                return false;
+            boolean[] results = AsyncBulletinBoard.await(result);
+
+            List<Long> confirmedIds = new ArrayList<>(batch.size());
+            for (int i = 0; i < results.length; i++) {
+                if (results[i]) {
+                    confirmedIds.add(batch.get(i).messageId());
+                } else {
+                    log.warn("INBOX CONFIRM: Server returned false for tag {}. Will retry.", batch.get(i).recvTag());
+                }
             }
-        } catch (RuntimeException e) {
-            log.warn("RMI ERROR during confirmation for tag {}. Will retry later.", unconfirmed.recvTag());
-            bulletinBoardStubs.clear();
+            databaseManager.deletePendingConfirmations(confirmedIds);
+            log.info("INBOX CONFIRM: Successfully confirmed {} message(s)", confirmedIds.size());
+            return !confirmedIds.isEmpty();
+        } catch (RemoteException e) {
+            log.warn("RMI ERROR during batched confirmation. Will retry later.");
             return false;
         } catch (Exception e) {
-            log.error("Unexpected error during confirmation for tag {}", unconfirmed.recvTag(), e);
+            log.error("Unexpected error during batched confirmation", e);
             return false;
         }
     }
-
-    // Determines the RMI port for a given index.
-    private int getPortForIndex(long idx) {
-        int portIndex = (int) (Math.abs(idx) % NUM_SERVERS);
-        return RMI_PORTS[portIndex];
-    }
 }
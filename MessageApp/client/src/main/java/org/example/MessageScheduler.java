@@ -0,0 +1,143 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Runs the client's background work as work items, woken by events instead of timed sleeps. An item runs at
+// most once at a time, on a virtual thread, so a long poll holds no platform thread. Each run returns when the
+// item wants to run again: 0 for right away, a delay in ms for retries and fallback polls, or IDLE to wait for
+// the next wake. A wake during a run makes the item run once more right after. One platform thread keeps the timers.
+public class MessageScheduler {
+    private static final Logger log = LoggerFactory.getLogger(MessageScheduler.class);
+    public static final long IDLE = -1;
+    // After a run that threw, the item is tried again this much later
+    private static final long FAILURE_DELAY_MS = 8000;
+
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Message-Scheduler-Thread");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Message-Worker-", 0).factory());
+    private final List<WorkItem> items = new CopyOnWriteArrayList<>();
+    private volatile boolean running = false;
+
+    public final class WorkItem {
+        private final String name;
+        private final LongSupplier body;
+        private boolean inRun;
+        private boolean wakeRequested;
+        private ScheduledFuture<?> timer;
+        private boolean cancelled;
+
+        private WorkItem(String name, LongSupplier body) {
+            this.name = name;
+            this.body = body;
+        }
+
+        // Runs the item as soon as possible
+        public synchronized void wake() {
+            if (!running || cancelled) return;
+            if (inRun) {
+                wakeRequested = true;
+                return;
+            }
+            cancelTimer();
+            inRun = true;
+            try {
+                workers.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                inRun = false; // shutting down
+            }
+        }
+
+        // Runs the item within delayMs, unless it is due sooner already, so a burst of events shares one run
+        public synchronized void wakeWithin(long delayMs) {
+            if (!running || cancelled) return;
+            if (inRun) {
+                wakeRequested = true;
+            } else if (timer == null || timer.getDelay(TimeUnit.MILLISECONDS) > delayMs) {
+                schedule(delayMs);
+            }
+        }
+
+        private void run() {
+            long next;
+            try {
+                next = body.getAsLong();
+            } catch (RuntimeException e) {
+                log.error("SCHEDULER: {} failed, trying again in {} ms", name, FAILURE_DELAY_MS, e);
+                next = FAILURE_DELAY_MS;
+            }
+            synchronized (this) {
+                inRun = false;
+                if (cancelled) return;
+                if (wakeRequested || next == 0) {
+                    wakeRequested = false;
+                    wake();
+                } else if (next > 0 && running) {
+                    schedule(next);
+                }
+            }
+        }
+
+        // Takes the item out of the scheduler for good. A run in progress finishes, but nothing runs it again.
+        public synchronized void cancel() {
+            cancelled = true;
+            cancelTimer();
+            items.remove(this);
+        }
+
+        private void schedule(long delayMs) {
+            cancelTimer();
+            try {
+                timer = timers.schedule(this::wake, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+
+        private void cancelTimer() {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+        }
+    }
+
+    // Items only run once the scheduler is started
+    public WorkItem add(String name, LongSupplier body) {
+        WorkItem item = new WorkItem(name, body);
+        items.add(item);
+        return item;
+    }
+
+    // Runs every item once
+    public void start() {
+        running = true;
+        items.forEach(WorkItem::wake);
+    }
+
+    // Stops waking items and interrupts the runs in progress
+    public void shutdown() {
+        running = false;
+        timers.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    public void awaitTermination(long timeoutMs) throws InterruptedException {
+        if (!workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("SCHEDULER: Work still running {} ms after shutdown", timeoutMs);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Solves proofs of work ahead of time. A chat's next send index and tag are known long before the user
+// sends, and the proof only covers those two, so it can be solved while the client is idle. Background
+// solves run one at a time on a single low-priority thread, leaving the other cores to the UI and to
+// sends that could not be precomputed. At most MAX_ENTRIES proofs are kept; past that the least recently
+// requested one is cancelled and dropped, which is the proof of an index a chat has since moved past, or of
+// a chat that is gone.
+public class ProofPrecomputer {
+    private static final Logger log = LoggerFactory.getLogger(ProofPrecomputer.class);
+    private static final int MAX_ENTRIES = 256;
+
+    private record Key(String tag, long idx) {}
+
+    // A background solve, finished or not, with the token that stops it
+    private record Entry(CompletableFuture<ProofOfWork.ProofResult> proof, CancellationToken cancellation) {}
+
+    // In access order, so the entries of chats that still precompute stay at the back; guarded by itself
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() <= MAX_ENTRIES) return false;
+            eldest.getValue().cancellation().cancel();
+            return true;
+        }
+    };
+    private final ExecutorService solver = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "PoW-Precompute-Thread");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // Queues a background solve for (tag, idx) unless one is cached or under way already.
+    public void precompute(String tag, long idx, int difficultyBits) {
+        synchronized (entries) {
+            entries.computeIfAbsent(new Key(tag, idx), key -> {
+                CancellationToken cancellation = new CancellationToken();
+                CompletableFuture<ProofOfWork.ProofResult> proof = CompletableFuture.supplyAsync(
+                        () -> ProofOfWork.computeProof(tag, idx, difficultyBits, 1, cancellation), solver);
+                proof.thenAccept(result -> log.debug("PRECOMPUTE: Proof for idx {} ready after {} ms", idx, result.computationTimeMs()));
+                return new Entry(proof, cancellation);
+            });
+        }
+    }
+
+    // Returns a proof for (tag, idx) at the given difficulty. A finished precomputed proof that meets it is
+    // returned at once. Otherwise the proof is solved here with all cores: the search is memoryless, so an
+    // unfinished single-threaded solve is no closer to a result than a fresh one. Either way the entry is used up.
+    public ProofOfWork.ProofResult solve(String tag, long idx, int difficultyBits, CancellationToken cancellation) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(new Key(tag, idx));
+        }
+        if (entry != null) {
+            entry.cancellation().cancel();
+            ProofOfWork.ProofResult cached = entry.proof().isCompletedExceptionally() ? null : entry.proof().getNow(null);
+            if (cached != null && ProofOfWork.verifyProof(tag, idx, cached.nonce(), difficultyBits)) {
+                log.info("PRECOMPUTE: Using precomputed proof for idx {}", idx);
+                return new ProofOfWork.ProofResult(cached.nonce(), 0);
+            }
+        }
+        return ProofOfWork.computeProof(tag, idx, difficultyBits, ProofOfWork.DEFAULT_THREADS, cancellation);
+    }
+
+    // Stops all background solves and forgets every proof.
+    public void clear() {
+        synchronized (entries) {
+            entries.values().forEach(entry -> entry.cancellation().cancel());
+            entries.clear();
+        }
+    }
+}
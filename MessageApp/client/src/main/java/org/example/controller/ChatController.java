@@ -118,15 +118,11 @@ public class ChatController {
                 messageField.setVisible(canSend);
                 messageField.setManaged(canSend);
 
-                // Immediately fetch messages for the selected chat
                 ChatState selectedChat = chatCore.getChatState(selectedIndex);
                 if (selectedChat != null) {
-                    // Set this chat as active, active chats are polled more frequently
+                    // Set this chat as active, which immediately starts long-polling for its messages
                     chatCore.setActiveChatUuid(selectedChat.getRecipientUuid());
 
-                    // Thread to fetch messages of the selected chat
-                    new Thread(() -> chatCore.getInAndOutBox().fetchMessagesImmediately(selectedChat)).start();
-
                     // Update and show chat header
                     updateChatHeader(selectedChat);
                 }
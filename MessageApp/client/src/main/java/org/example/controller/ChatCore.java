@@ -93,7 +93,8 @@ public class ChatCore {
             // Restore chat states from database
             restoreChatStates();
             // Initialize and start InAndOutBox for message processing
-            inAndOutBox = new InAndOutBox(this, databaseManager);
+            // Which server holds which index, see -Dbulletin.shards
+            inAndOutBox = new InAndOutBox(this, databaseManager, ShardMap.fromConfig());
             inAndOutBox.start();
 
             // Add a shutdown hook to ensure graceful shutdown of the message processor
@@ -101,7 +102,7 @@ public class ChatCore {
                 log.info("Shutdown hook triggered. Stopping message processor...");
                 if (inAndOutBox != null) {
                     inAndOutBox.stop();
-                    inAndOutBox.join(); // Wait for the thread to finish
+                    inAndOutBox.join(); // Wait for the work in progress to finish
                 }
                 log.info("Message processor stopped gracefully.");
             }));
@@ -256,6 +257,9 @@ public class ChatCore {
                 byte[] recvKeyBytes = recvSecretKey == null ? null : recvSecretKey.getEncoded();
                 databaseManager.upsertChatState(recipientName, recipientUuid, sendKeyBytes, recvKeyBytes, sendIdx, recvIdx, sendTag, recvTag);
             }
+            if (inAndOutBox != null) {
+                inAndOutBox.chatsChanged();
+            }
 
             log.info("Created chat with {}: canSend={}, canReceive={}", recipientName, chat.canSend(), chat.canReceive());
             return true;
@@ -320,10 +324,9 @@ public class ChatCore {
             // save it in the db as pending and send it
             if (databaseManager != null) {
                 // store message in the database
-                long messageId = databaseManager.addMessage(chat.recipient, chat.getRecipientUuid(), message, true, false);
-                // initiate sending immediately in a separate thread, for faster UI response
-                DatabaseManager.PendingMessage pendingMessage = new DatabaseManager.PendingMessage(messageId, chat.recipient, chat.getRecipientUuid(), message, null, null, null);
-                new Thread(() -> inAndOutBox.sendMessageImmediately(pendingMessage)).start();
+                databaseManager.addMessage(chat.recipient, chat.getRecipientUuid(), message, true, false);
+                // wake the outbox, which sends it right away
+                inAndOutBox.outboxChanged();
             }
             log.info("Bericht lokaal gebufferd voor verzending naar {}", chat.recipient);
         } catch (Exception e) {
@@ -373,6 +376,9 @@ public class ChatCore {
     public void setActiveChatUuid(String chatUuid) {
         this.activeChatUuid = chatUuid;
         log.debug("Active chat set to: {}", chatUuid);
+        if (inAndOutBox != null) {
+            inAndOutBox.activeChatChanged();
+        }
     }
 
     public String getActiveChatUuid() {
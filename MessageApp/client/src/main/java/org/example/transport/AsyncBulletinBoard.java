@@ -0,0 +1,41 @@
+package org.example.transport;
+
+import org.example.BulletinBoard;
+import org.example.ConfirmRequest;
+import org.example.GetRequest;
+import org.example.Pair;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Non-blocking view of a server connection. Each call returns at once and many calls may be outstanding at
+// the same time; results complete in whatever order the server answers. A failed call completes
+// exceptionally, with a RemoteException as cause when the server could not be reached.
+public interface AsyncBulletinBoard {
+    CompletableFuture<Boolean> addAsync(long idx, byte[] value, String tag, long nonce);
+
+    CompletableFuture<Pair> getAsync(long idx, String preimage);
+
+    CompletableFuture<Boolean> confirmAsync(long idx, String tag);
+
+    CompletableFuture<List<Pair>> getBatchAsync(List<GetRequest> requests);
+
+    CompletableFuture<boolean[]> confirmBatchAsync(List<ConfirmRequest> requests);
+
+    // The framed client multiplexes natively; RMI stubs are adapted.
+    static AsyncBulletinBoard of(BulletinBoard board) {
+        return board instanceof AsyncBulletinBoard async ? async : new RmiAsyncBoard(board);
+    }
+
+    // Waits for a result, turning any failure back into the RemoteException a blocking call would have thrown.
+    static <T> T await(CompletableFuture<T> result) throws RemoteException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RemoteException remote) throw remote;
+            throw new RemoteException("Request failed", e.getCause());
+        }
+    }
+}
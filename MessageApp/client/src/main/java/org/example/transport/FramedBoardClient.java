@@ -0,0 +1,249 @@
+package org.example.transport;
+
+import org.example.AddRequest;
+import org.example.BulletinBoard;
+import org.example.ConfirmRequest;
+import org.example.DeliveryListener;
+import org.example.DifficultyRaisedException;
+import org.example.FrameCodec;
+import org.example.GetRequest;
+import org.example.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// BulletinBoard over the server's framed binary protocol instead of RMI. One connection is shared by all
+// callers: requests are written under a lock, and a reader thread completes each caller's future by request id,
+// so any number of calls can be outstanding and a long poll does not hold up the others. The blocking methods
+// wait on those futures; failures surface as RemoteException, just like with an RMI stub.
+// Push delivery is not available over this transport; subscribe returns false.
+public class FramedBoardClient implements BulletinBoard, AsyncBulletinBoard, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FramedBoardClient.class);
+    // Longer than the longest wait a server allows for getOrWait
+    private static final long CALL_TIMEOUT_MS = 60_000;
+
+    private final SocketChannel channel;
+    private final Map<Integer, CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Object writeLock = new Object();
+    private final Thread readerThread;
+    private volatile boolean closed = false;
+
+    private FramedBoardClient(SocketChannel channel, int port) {
+        this.channel = channel;
+        this.readerThread = new Thread(this::readLoop, "Framed-Transport-Reader-" + port);
+        readerThread.setDaemon(true);
+    }
+
+    // Opens the connection and starts its reader thread once the client is fully built.
+    public static FramedBoardClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        FramedBoardClient client = new FramedBoardClient(channel, port);
+        client.readerThread.start();
+        return client;
+    }
+
+    @Override
+    public boolean add(long idx, byte[] value, String tag, long nonce) throws RemoteException {
+        return AsyncBulletinBoard.await(addAsync(idx, value, tag, nonce));
+    }
+
+    @Override
+    public int getDifficulty() throws RemoteException {
+        return AsyncBulletinBoard.await(callAsync(request(FrameCodec.GET_DIFFICULTY)).thenApply(ByteBuffer::getInt));
+    }
+
+    @Override
+    public Pair get(long idx, String preimage) throws RemoteException {
+        return AsyncBulletinBoard.await(getAsync(idx, preimage));
+    }
+
+    @Override
+    public boolean confirm(long idx, String tag) throws RemoteException {
+        return AsyncBulletinBoard.await(confirmAsync(idx, tag));
+    }
+
+    @Override
+    public Pair getOrWait(long idx, String preimage, long timeoutMs) throws RemoteException {
+        FrameCodec.Writer request = request(FrameCodec.GET_OR_WAIT).putGetRequest(new GetRequest(idx, preimage)).putLong(timeoutMs);
+        return AsyncBulletinBoard.await(callAsync(request).thenApply(FrameCodec::getPair));
+    }
+
+    @Override
+    public boolean subscribe(List<String> tags, DeliveryListener listener) {
+        return false;
+    }
+
+    @Override
+    public void unsubscribe(DeliveryListener listener) {
+        // nothing to undo, subscribe never succeeds here
+    }
+
+    @Override
+    public boolean[] addBatch(List<AddRequest> requests) throws RemoteException {
+        FrameCodec.Writer writer = request(FrameCodec.ADD_BATCH).putInt(requests.size());
+        requests.forEach(writer::putAddRequest);
+        return AsyncBulletinBoard.await(callAsync(writer).thenApply(FramedBoardClient::readBooleans));
+    }
+
+    @Override
+    public List<Pair> getBatch(List<GetRequest> requests) throws RemoteException {
+        return AsyncBulletinBoard.await(getBatchAsync(requests));
+    }
+
+    @Override
+    public boolean[] confirmBatch(List<ConfirmRequest> requests) throws RemoteException {
+        return AsyncBulletinBoard.await(confirmBatchAsync(requests));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addAsync(long idx, byte[] value, String tag, long nonce) {
+        return callAsync(request(FrameCodec.ADD).putAddRequest(new AddRequest(idx, value, tag, nonce))).thenApply(FrameCodec::getBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Pair> getAsync(long idx, String preimage) {
+        return callAsync(request(FrameCodec.GET).putGetRequest(new GetRequest(idx, preimage))).thenApply(FrameCodec::getPair);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> confirmAsync(long idx, String tag) {
+        return callAsync(request(FrameCodec.CONFIRM).putConfirmRequest(new ConfirmRequest(idx, tag))).thenApply(FrameCodec::getBoolean);
+    }
+
+    @Override
+    public CompletableFuture<List<Pair>> getBatchAsync(List<GetRequest> requests) {
+        FrameCodec.Writer writer = request(FrameCodec.GET_BATCH).putInt(requests.size());
+        requests.forEach(writer::putGetRequest);
+        return callAsync(writer).thenApply(response -> {
+            List<Pair> pairs = new ArrayList<>();
+            for (int i = response.getInt(); i > 0; i--) {
+                pairs.add(FrameCodec.getPair(response));
+            }
+            return pairs;
+        });
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> confirmBatchAsync(List<ConfirmRequest> requests) {
+        FrameCodec.Writer writer = request(FrameCodec.CONFIRM_BATCH).putInt(requests.size());
+        requests.forEach(writer::putConfirmRequest);
+        return callAsync(writer).thenApply(FramedBoardClient::readBooleans);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Error closing framed connection", e);
+        }
+        failPending(new RemoteException("Framed connection is closed"));
+    }
+
+    private FrameCodec.Writer request(byte type) {
+        return new FrameCodec.Writer(nextRequestId.incrementAndGet(), type);
+    }
+
+    // Sends the request; the future completes with the response payload once the reader thread sees it.
+    private CompletableFuture<ByteBuffer> callAsync(FrameCodec.Writer request) {
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        if (closed) {
+            response.completeExceptionally(new RemoteException("Framed connection is closed"));
+            return response;
+        }
+
+        int requestId = request.requestId();
+        pending.put(requestId, response);
+        response.whenComplete((payload, error) -> pending.remove(requestId));
+        if (closed) {
+            // closed while registering; close() may have missed this one
+            response.completeExceptionally(new RemoteException("Framed connection is closed"));
+            return response;
+        }
+        try {
+            ByteBuffer frame = request.finish();
+            synchronized (writeLock) {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            }
+        } catch (IOException e) {
+            close();
+        }
+        return response.orTimeout(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> CompletableFuture.failedFuture(toRemoteException(error)));
+    }
+
+    private static RemoteException toRemoteException(Throwable error) {
+        if (error instanceof RemoteException remote) return remote;
+        if (error instanceof TimeoutException) return new RemoteException("Framed request timed out");
+        return new RemoteException("Framed connection failed", error);
+    }
+
+    private void readLoop() {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(FrameCodec.LENGTH_BYTES);
+        try {
+            while (!closed) {
+                readFully(lengthBuffer.clear());
+                int length = lengthBuffer.getInt(0);
+                if (length < FrameCodec.HEADER_BYTES || length > FrameCodec.MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(body);
+                FrameCodec.Frame frame = FrameCodec.decode(body.flip());
+
+                CompletableFuture<ByteBuffer> response = pending.get(frame.requestId());
+                if (response == null) continue; // caller gave up
+                if (frame.type() == FrameCodec.ERROR) {
+                    response.completeExceptionally(new RemoteException("Server error: " + FrameCodec.getString(frame.payload())));
+                } else if (frame.type() == FrameCodec.DIFFICULTY_RAISED) {
+                    response.completeExceptionally(new DifficultyRaisedException(frame.payload().getInt()));
+                } else {
+                    response.complete(frame.payload());
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Framed connection lost: {}", e.getMessage());
+            }
+            close();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Connection closed by server");
+        }
+    }
+
+    private void failPending(RemoteException cause) {
+        pending.values().forEach(response -> response.completeExceptionally(cause));
+    }
+
+    private static boolean[] readBooleans(ByteBuffer response) {
+        boolean[] results = new boolean[response.getInt()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = FrameCodec.getBoolean(response);
+        }
+        return results;
+    }
+}
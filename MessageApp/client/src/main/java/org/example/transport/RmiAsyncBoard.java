@@ -0,0 +1,61 @@
+package org.example.transport;
+
+import org.example.BulletinBoard;
+import org.example.ConfirmRequest;
+import org.example.GetRequest;
+import org.example.Pair;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Adapts an RMI stub to AsyncBulletinBoard by running each blocking call on its own virtual thread.
+// RMI has no request ids, so concurrent calls use extra pooled connections instead of sharing one.
+class RmiAsyncBoard implements AsyncBulletinBoard {
+    private static final ExecutorService CALLS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final BulletinBoard board;
+
+    RmiAsyncBoard(BulletinBoard board) {
+        this.board = board;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addAsync(long idx, byte[] value, String tag, long nonce) {
+        return submit(() -> board.add(idx, value, tag, nonce));
+    }
+
+    @Override
+    public CompletableFuture<Pair> getAsync(long idx, String preimage) {
+        return submit(() -> board.get(idx, preimage));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> confirmAsync(long idx, String tag) {
+        return submit(() -> board.confirm(idx, tag));
+    }
+
+    @Override
+    public CompletableFuture<List<Pair>> getBatchAsync(List<GetRequest> requests) {
+        return submit(() -> board.getBatch(requests));
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> confirmBatchAsync(List<ConfirmRequest> requests) {
+        return submit(() -> board.confirmBatch(requests));
+    }
+
+    private static <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CALLS.execute(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+}
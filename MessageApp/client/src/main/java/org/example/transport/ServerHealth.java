@@ -0,0 +1,155 @@
+package org.example.transport;
+
+import org.example.ShardMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tracks how each server has been answering: a latency EWMA, an error rate EWMA, a window of recent latencies
+// for the p95, and a circuit breaker. After FAILURE_THRESHOLD failures in a row, or once more than half of the
+// recent calls failed, the breaker opens and the server gets no calls at all. When the open period ends one
+// probe call is let through; success closes the breaker again, failure reopens it for twice as long.
+public class ServerHealth {
+    private static final Logger log = LoggerFactory.getLogger(ServerHealth.class);
+    private static final double ALPHA = 0.2;
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("bulletin.health.failureThreshold", 3);
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final int MIN_CALLS_FOR_RATE = 20;
+    private static final long MIN_OPEN_MS = 1000;
+    private static final long MAX_OPEN_MS = 30_000;
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES_FOR_P95 = 20;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final Map<ShardMap.Shard, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private static class Endpoint {
+        double latencyEwmaMs;
+        double errorRate;
+        long calls;
+        int consecutiveFailures;
+        State state = State.CLOSED;
+        long openUntil;
+        long openMs = MIN_OPEN_MS;
+        final long[] latencies = new long[WINDOW];
+        int samples;
+    }
+
+    // Whether a call to this server may be made now. In the half-open state this hands out the single probe
+    // and pushes the next one back by the open period.
+    public boolean allowRequest(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            if (endpoint.state == State.CLOSED) return true;
+            long now = System.currentTimeMillis();
+            if (now < endpoint.openUntil) return false;
+            endpoint.state = State.HALF_OPEN;
+            endpoint.openUntil = now + endpoint.openMs;
+            log.info("HEALTH: Probing {} after {} ms", shard, endpoint.openMs);
+            return true;
+        }
+    }
+
+    // Like allowRequest, but without using up the probe.
+    public boolean isAvailable(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            return endpoint.state == State.CLOSED || System.currentTimeMillis() >= endpoint.openUntil;
+        }
+    }
+
+    // A call that completed; its latency counts towards the p95.
+    public void recordSuccess(ShardMap.Shard shard, long latencyNanos) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            long latencyMs = latencyNanos / 1_000_000;
+            endpoint.latencyEwmaMs = endpoint.samples == 0 ? latencyMs : ALPHA * latencyMs + (1 - ALPHA) * endpoint.latencyEwmaMs;
+            endpoint.latencies[endpoint.samples++ % WINDOW] = latencyMs;
+            succeeded(shard, endpoint);
+        }
+    }
+
+    // A call that completed but whose duration says nothing about the server, such as a long poll.
+    public void recordSuccess(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            succeeded(shard, endpoint);
+        }
+    }
+
+    public void recordFailure(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            endpoint.calls++;
+            endpoint.consecutiveFailures++;
+            endpoint.errorRate = ALPHA + (1 - ALPHA) * endpoint.errorRate;
+            long now = System.currentTimeMillis();
+            if (endpoint.state == State.HALF_OPEN) {
+                endpoint.openMs = Math.min(endpoint.openMs * 2, MAX_OPEN_MS);
+                open(shard, endpoint, now);
+            } else if (endpoint.state == State.CLOSED && (endpoint.consecutiveFailures >= FAILURE_THRESHOLD
+                    || (endpoint.calls >= MIN_CALLS_FOR_RATE && endpoint.errorRate > MAX_ERROR_RATE))) {
+                open(shard, endpoint, now);
+            }
+        }
+    }
+
+    // The 95th percentile of the recent latencies, or -1 while there are too few of them.
+    public long p95Millis(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        long[] window;
+        synchronized (endpoint) {
+            if (endpoint.samples < MIN_SAMPLES_FOR_P95) return -1;
+            window = Arrays.copyOf(endpoint.latencies, Math.min(endpoint.samples, WINDOW));
+        }
+        Arrays.sort(window);
+        return window[(int) Math.ceil(window.length * 0.95) - 1];
+    }
+
+    public double latencyEwmaMillis(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            return endpoint.latencyEwmaMs;
+        }
+    }
+
+    public double errorRate(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            return endpoint.errorRate;
+        }
+    }
+
+    public State state(ShardMap.Shard shard) {
+        Endpoint endpoint = endpoint(shard);
+        synchronized (endpoint) {
+            return endpoint.state;
+        }
+    }
+
+    private void succeeded(ShardMap.Shard shard, Endpoint endpoint) {
+        endpoint.calls++;
+        endpoint.consecutiveFailures = 0;
+        endpoint.errorRate = (1 - ALPHA) * endpoint.errorRate;
+        if (endpoint.state != State.CLOSED) {
+            endpoint.state = State.CLOSED;
+            endpoint.openMs = MIN_OPEN_MS;
+            log.info("HEALTH: {} is answering again, circuit closed", shard);
+        }
+    }
+
+    private void open(ShardMap.Shard shard, Endpoint endpoint, long now) {
+        endpoint.state = State.OPEN;
+        endpoint.openUntil = now + endpoint.openMs;
+        log.warn("HEALTH: Circuit to {} open for {} ms ({} failure(s) in a row, error rate {})",
+                shard, endpoint.openMs, endpoint.consecutiveFailures, String.format("%.2f", endpoint.errorRate));
+    }
+
+    private Endpoint endpoint(ShardMap.Shard shard) {
+        return endpoints.computeIfAbsent(shard, s -> new Endpoint());
+    }
+}
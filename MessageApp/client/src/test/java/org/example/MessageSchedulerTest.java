@@ -0,0 +1,143 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageSchedulerTest {
+    private final MessageScheduler scheduler = new MessageScheduler();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void itemsOnlyRunOnceStarted() throws InterruptedException {
+        Semaphore runs = new Semaphore(0);
+        MessageScheduler.WorkItem item = scheduler.add("test", () -> {
+            runs.release();
+            return MessageScheduler.IDLE;
+        });
+        item.wake();
+        assertFalse(runs.tryAcquire(100, TimeUnit.MILLISECONDS));
+
+        scheduler.start();
+        assertTrue(runs.tryAcquire(1, TimeUnit.SECONDS));
+        // An idle item waits for the next wake
+        assertFalse(runs.tryAcquire(200, TimeUnit.MILLISECONDS));
+        item.wake();
+        assertTrue(runs.tryAcquire(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void returnedDelaySchedulesTheNextRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch thirdRun = new CountDownLatch(3);
+        long start = System.nanoTime();
+        scheduler.add("test", () -> {
+            runs.incrementAndGet();
+            thirdRun.countDown();
+            return runs.get() < 3 ? 100 : MessageScheduler.IDLE;
+        });
+        scheduler.start();
+
+        assertTrue(thirdRun.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        Thread.sleep(200);
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    void wakesDuringARunCollapseIntoOneMoreRun() throws InterruptedException {
+        CountDownLatch inRun = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        MessageScheduler.WorkItem item = scheduler.add("test", () -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                if (runs.incrementAndGet() == 1) {
+                    inRun.countDown();
+                    finish.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return MessageScheduler.IDLE;
+        });
+        scheduler.start();
+
+        assertTrue(inRun.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            item.wake();
+        }
+        finish.countDown();
+        Thread.sleep(300);
+        assertEquals(2, runs.get());
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    void wakeWithinSharesOneRunForABurst() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        MessageScheduler.WorkItem item = scheduler.add("test", () -> {
+            runs.incrementAndGet();
+            return MessageScheduler.IDLE;
+        });
+        scheduler.start();
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+
+        for (int i = 0; i < 10; i++) {
+            item.wakeWithin(100);
+        }
+        Thread.sleep(400);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void cancelledItemIsNotRunAgain() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        MessageScheduler.WorkItem item = scheduler.add("test", () -> {
+            runs.incrementAndGet();
+            return 20;
+        });
+        scheduler.start();
+        Thread.sleep(100);
+        item.cancel();
+        Thread.sleep(50);
+        int afterCancel = runs.get();
+        item.wake();
+        item.wakeWithin(10);
+        Thread.sleep(100);
+        assertEquals(afterCancel, runs.get());
+    }
+
+    @Test
+    void shutdownStopsFurtherRuns() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.add("test", () -> {
+            runs.incrementAndGet();
+            return 20;
+        });
+        scheduler.start();
+        Thread.sleep(100);
+        scheduler.shutdown();
+        scheduler.awaitTermination(1000);
+        int afterShutdown = runs.get();
+        Thread.sleep(100);
+        assertEquals(afterShutdown, runs.get());
+    }
+}
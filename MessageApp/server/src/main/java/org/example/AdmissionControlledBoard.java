@@ -0,0 +1,111 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The board as exported to clients. Calls that verify proofs or touch storage run through the RequestExecutor.
+// RMI connection threads run their call only if a slot is free and are turned away otherwise, so they never
+// park in the queue; the framed transport's virtual threads do queue. A rejected call gets the same answer
+// as a failed one (false or null), which clients already retry later.
+public class AdmissionControlledBoard implements BulletinBoard {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlledBoard.class);
+
+    private final BulletinBoard board;
+    private final RequestExecutor executor;
+    // Long polls keep their caller (an RMI connection thread, or a framed handler) for up to 25 s, so they get a
+    // budget of their own; executor slots are for short work
+    private final Semaphore waiters = new Semaphore(Integer.getInteger("bulletin.maxWaiters", 512));
+    private final AtomicLong refusedWaits = new AtomicLong();
+
+    public AdmissionControlledBoard(BulletinBoard board, RequestExecutor executor) {
+        this.board = board;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean add(long idx, byte[] value, String tag, long nonce) throws RemoteException {
+        return run(() -> board.add(idx, value, tag, nonce), false);
+    }
+
+    @Override
+    public Pair get(long idx, String preimage) throws RemoteException {
+        return run(() -> board.get(idx, preimage), null);
+    }
+
+    @Override
+    public boolean confirm(long idx, String tag) throws RemoteException {
+        return run(() -> board.confirm(idx, tag), false);
+    }
+
+    // At most -Dbulletin.maxWaiters calls wait at once. Past that a call does not wait: it is answered like a get,
+    // through the executor, and the client polls again later.
+    @Override
+    public Pair getOrWait(long idx, String preimage, long timeoutMs) throws RemoteException {
+        if (!waiters.tryAcquire()) {
+            long total = refusedWaits.incrementAndGet();
+            log.warn("OVERLOADED: Long poll answered without waiting ({} refused so far)", total);
+            return get(idx, preimage);
+        }
+        try {
+            return board.getOrWait(idx, preimage, timeoutMs);
+        } finally {
+            waiters.release();
+        }
+    }
+
+    public long getRefusedWaits() {
+        return refusedWaits.get();
+    }
+
+    // Only reads a field, and clients need it most when the queue is full
+    @Override
+    public int getDifficulty() throws RemoteException {
+        return board.getDifficulty();
+    }
+
+    @Override
+    public boolean subscribe(List<String> tags, DeliveryListener listener) throws RemoteException {
+        return board.subscribe(tags, listener);
+    }
+
+    @Override
+    public void unsubscribe(DeliveryListener listener) throws RemoteException {
+        board.unsubscribe(listener);
+    }
+
+    @Override
+    public boolean[] addBatch(List<AddRequest> requests) throws RemoteException {
+        return run(() -> board.addBatch(requests), new boolean[requests.size()]);
+    }
+
+    @Override
+    public List<Pair> getBatch(List<GetRequest> requests) throws RemoteException {
+        return run(() -> board.getBatch(requests), new ArrayList<>(Collections.nCopies(requests.size(), null)));
+    }
+
+    @Override
+    public boolean[] confirmBatch(List<ConfirmRequest> requests) throws RemoteException {
+        return run(() -> board.confirmBatch(requests), new boolean[requests.size()]);
+    }
+
+    private <T> T run(Callable<T> call, T rejectedResult) throws RemoteException {
+        try {
+            return executor.call(call);
+        } catch (RejectedExecutionException e) {
+            return rejectedResult;
+        } catch (RemoteException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RemoteException("Request failed", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example;
+
+import java.util.List;
+
+// The cells of one board generation, each holding tag -> value entries. Check-then-act sequences on a
+// cell must run while holding lockFor(cell); the individual operations are thread-safe on their own.
+interface BucketStore {
+
+    // An entry as seen by a scan; idx is the board index the message was added with.
+    record Entry(int cell, String tag, long idx) {}
+
+    // Whether this layout can hold the given tag at all.
+    boolean accepts(String tag);
+
+    boolean contains(int cell, String tag);
+
+    // Whether any cell holds the tag.
+    boolean containsTag(String tag);
+
+    void put(int cell, String tag, long idx, StoredValue value);
+
+    // Returns false if the tag is already present.
+    boolean putIfAbsent(int cell, String tag, long idx, StoredValue value);
+
+    // Removes and returns the entry, or null if the cell does not hold the tag.
+    StoredValue remove(int cell, String tag);
+
+    Object lockFor(int cell);
+
+    // Adds entries from the cursor position onwards to out until about limit were collected. Returns the cursor
+    // to continue from, or -1 once the end was reached. Entries changed during a scan may be missed or repeated.
+    int scan(int cursor, int limit, List<Entry> out);
+}
@@ -5,33 +5,78 @@ import org.slf4j.LoggerFactory;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
 
 public class BulletinBoardImpl implements BulletinBoard {
     private static final Logger logger = LoggerFactory.getLogger(BulletinBoardImpl.class);
 
     private static final double LOAD_FACTOR_THRESHOLD = 0.01;
-    private final transient ServerDatabaseManager dbManager;
+    private static final long RECOVERY_PROGRESS_INTERVAL = 100_000;
+    private final transient MessageStore store;
+    private final transient GroupCommitWriter writer;
+    private final transient CheckoutLeaseStore leases;
+    // Whether this server is the shard for an index; adds for other shards' indices are refused
+    private final LongPredicate ownsIndex;
+    private final DifficultyController difficulty;
+    // Answers repeated adds of a recently stored message without verifying or storing them again
+    private final ProofReplayFilter replayFilter = new ProofReplayFilter();
+
+    // --- Lazy Values ---
+    // In lazy mode buckets only keep the store locator of each message and the ciphertext is read on get,
+    // with a bounded LRU cache in front, so the heap no longer grows with the undelivered payload.
+    private final boolean lazyValues = Boolean.getBoolean("bulletin.lazyValues");
+    private final ValueCache valueCache = new ValueCache(Long.getLong("bulletin.valueCacheMb", 64) * 1024 * 1024);
+    // --------------------------------
+
+    // "map" keeps one ConcurrentHashMap per cell; "offheap" packs a generation into a single primitive table
+    private final boolean offHeapBuckets = "offheap".equalsIgnoreCase(System.getProperty("bulletin.buckets", "map"));
 
     private volatile BoardGeneration activeBoard;
     private final CopyOnWriteArrayList<BoardGeneration> drainingBoards = new CopyOnWriteArrayList<>();
+    // Which generation's buckets hold each tag, so get and confirm go straight to one cell. Updated under the
+    // cell lock whenever a bucket gains or loses a tag. Off-heap generations are keyed by tag already, so that
+    // layout goes without it: a map entry per message would cost more heap than the whole off-heap table.
+    private final Map<String, BoardGeneration> tagIndex = offHeapBuckets ? null : new ConcurrentHashMap<>();
+    // Messages stored before their idx was persisted have no cell in a newer generation. The migration parks
+    // them here by tag, with the capacity and cell they were stored under, so their generation can still retire.
+    private record ParkedEntry(int capacity, int cell, StoredValue value) {}
+    private final Map<String, ParkedEntry> parkedEntries = new ConcurrentHashMap<>();
+
+    // --- Background Migration ---
+    // Entries of draining generations are moved into the active one in small time-bounded slices and empty
+    // generations are retired, so lookups do not probe more generations as the board keeps growing.
+    private static final int MIGRATION_SCAN_SIZE = 256;
+    private final long migrationSliceNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("bulletin.migration.sliceMs", 10));
+    private final ScheduledExecutorService migrator;
+    // --------------------------------
 
     // --- Two-Phase Commit for Get ---
     private static class CheckedOutMessage {
         final BoardGeneration board;
         final long idx;
         final String tag;
-        final byte[] value;
-        final long timestamp = System.currentTimeMillis();
+        final StoredValue value;
 
-        CheckedOutMessage(BoardGeneration board, long idx, String tag, byte[] value) {
+        CheckedOutMessage(BoardGeneration board, long idx, String tag, StoredValue value) {
             this.board = board;
             this.idx = idx;
             this.tag = tag;
@@ -40,98 +85,245 @@ public class BulletinBoardImpl implements BulletinBoard {
     }
     private final Map<String, CheckedOutMessage> checkedOutMessages = new ConcurrentHashMap<>();
     private static final long CHECKOUT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(20);
+    // Returns each orphaned checkout (client crashed between get and confirm) to the board within one tick of its deadline
+    private final ExpiryWheel checkoutExpiry = new ExpiryWheel("Checkout-Expiry-Thread",
+            Long.getLong("bulletin.expiry.tickMs", 100), 512, this::expireCheckout);
+    // --------------------------------
+
+    // --- Long Polling ---
+    // Every caller of getOrWait parks on a future of its own, registered under its tag. The add of that tag
+    // completes all of them; a caller that gives up only takes out its own future.
+    private static final long MAX_WAIT_MS = TimeUnit.SECONDS.toMillis(25);
+    private final Map<String, Set<CompletableFuture<Void>>> arrivals = new ConcurrentHashMap<>();
+    private final DeliveryDispatcher deliveryDispatcher = new DeliveryDispatcher();
     // --------------------------------
 
-    public BulletinBoardImpl(ServerDatabaseManager dbManager) {
-        this.dbManager = dbManager;
+    public BulletinBoardImpl(MessageStore store, CheckoutLeaseStore leases) {
+        this(store, leases, idx -> true);
+    }
+
+    public BulletinBoardImpl(MessageStore store, CheckoutLeaseStore leases, LongPredicate ownsIndex) {
+        this(store, leases, ownsIndex, new DifficultyController(() -> 0));
+    }
 
-        // --- Database Recovery ---
-        List<ServerDatabaseManager.PersistedMessage> allMessages = dbManager.loadAllMessagesWithCapacity();
-        Map<Integer, List<ServerDatabaseManager.PersistedMessage>> messagesByCapacity = allMessages.stream()
-                .collect(Collectors.groupingBy(ServerDatabaseManager.PersistedMessage::boardCapacity));
+    public BulletinBoardImpl(MessageStore store, CheckoutLeaseStore leases, LongPredicate ownsIndex, DifficultyController difficulty) {
+        this.store = store;
+        this.writer = new GroupCommitWriter(store);
+        this.leases = leases;
+        this.ownsIndex = ownsIndex;
+        this.difficulty = difficulty;
 
-        if (messagesByCapacity.isEmpty()) {
+        // --- Storage Recovery ---
+        Map<Integer, BoardGeneration> boardsByCapacity = recoverBoards();
+
+        if (boardsByCapacity.isEmpty()) {
             int initialSize = 1024;
             this.activeBoard = new BoardGeneration(initialSize);
             logger.info("No data in DB. Initialized new board size: {}", initialSize);
         } else {
-            int activeCapacity = messagesByCapacity.keySet().stream().max(Integer::compare).get();
-
-            Map<Integer, BoardGeneration> boardsByCapacity = new HashMap<>();
-            for (Map.Entry<Integer, List<ServerDatabaseManager.PersistedMessage>> entry : messagesByCapacity.entrySet()) {
-                int capacity = entry.getKey();
-                List<ServerDatabaseManager.PersistedMessage> messages = entry.getValue();
-                BoardGeneration board = new BoardGeneration(capacity);
-                messages.forEach(board::loadMessage);
-                boardsByCapacity.put(capacity, board);
-            }
+            int activeCapacity = boardsByCapacity.keySet().stream().max(Integer::compare).get();
 
             this.activeBoard = boardsByCapacity.remove(activeCapacity);
-            this.drainingBoards.addAll(boardsByCapacity.values());
+            // Oldest first, as resizes append them; lookups without the tag index rely on that order
+            this.drainingBoards.addAll(boardsByCapacity.values().stream().sorted(Comparator.comparingInt(b -> b.capacity)).toList());
 
             String drainingSizes = drainingBoards.stream().map(b -> String.valueOf(b.capacity)).collect(Collectors.joining(", "));
             logger.info("Server loaded. Active size: {}. Draining sizes: [{}]", this.activeBoard.capacity, drainingSizes.isEmpty() ? "None" : drainingSizes);
         }
+        restoreLeases();
+        checkoutExpiry.start();
+
+        if (offHeapBuckets) {
+            logger.info("Using off-heap bucket store");
+        }
+        if (lazyValues) {
+            logger.info("Lazy value loading enabled, value cache size {} MB", Long.getLong("bulletin.valueCacheMb", 64));
+        }
+
+        this.migrator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Board-Migration-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        long migrationInterval = Long.getLong("bulletin.migration.intervalMs", 100);
+        migrator.scheduleWithFixedDelay(this::migrateSlice, migrationInterval, migrationInterval, TimeUnit.MILLISECONDS);
+    }
+
+    // Streams every stored message straight into its generation. Partitions are read in parallel and
+    // nothing is buffered, so recovery time scales with the thread count and the heap only holds the boards.
+    private Map<Integer, BoardGeneration> recoverBoards() {
+        int partitions = Integer.getInteger("bulletin.recovery.threads", Runtime.getRuntime().availableProcessors());
+        Map<Integer, BoardGeneration> boardsByCapacity = new ConcurrentHashMap<>();
+        AtomicLong loaded = new AtomicLong();
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(partitions, r -> new Thread(r, "Recovery-Thread"));
+        try {
+            List<Future<?>> tasks = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                tasks.add(pool.submit(() -> store.streamMessages(partition, partitions, !lazyValues, msg -> {
+                    boardsByCapacity.computeIfAbsent(msg.boardCapacity(), BoardGeneration::new).loadMessage(msg);
+                    long count = loaded.incrementAndGet();
+                    if (count % RECOVERY_PROGRESS_INTERVAL == 0) {
+                        logger.info("RECOVERY: {} messages loaded after {} ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                })));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Recovery interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Recovery failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        logger.info("RECOVERY: {} messages restored into {} generation(s) in {} ms using {} thread(s)",
+                loaded.get(), boardsByCapacity.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), partitions);
+        return boardsByCapacity;
+    }
+
+    // Takes messages that were checked out before the restart off the board again, for the rest of their lease.
+    // Leases that ran out, or whose message was confirmed before the crash, are dropped.
+    private void restoreLeases() {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        List<String> stale = new ArrayList<>();
+        for (CheckoutLeaseStore.Lease lease : leases.loadLeases()) {
+            String tag = lease.messageTag();
+            long remaining = lease.expiresAt() - now;
+            TakenMessage taken = remaining > 0 ? takeFromBoard(lease.idx(), tag) : null;
+            if (taken == null) {
+                stale.add(tag);
+                continue;
+            }
+            checkedOutMessages.put(tag, new CheckedOutMessage(taken.board(), lease.idx(), tag, taken.value()));
+            checkoutExpiry.schedule(tag, remaining);
+            restored++;
+        }
+        leases.releaseAll(stale);
+        logger.info("RECOVERY: {} checkout lease(s) restored, {} expired or stale lease(s) dropped", restored, stale.size());
     }
 
     @Override
     public boolean add(long idx, byte[] value, String tag, long nonce) throws RemoteException {
         // Verify proof-of-work before accepting the message
-        if (!ProofOfWork.verifyProof(tag, idx, nonce)) {
+        difficulty.recordAdds(1);
+        if (!ProofOfWork.verifyProof(tag, idx, nonce, difficulty.acceptedBits())) {
+            // A proof that would pass at the floor was solved for an older difficulty; tell the client the new one
+            if (ProofOfWork.verifyProof(tag, idx, nonce, difficulty.minBits())) {
+                logger.info("REJECTED: Proof for tag {} at idx {} is below the current {} bits", tag, idx, difficulty.currentBits());
+                throw new DifficultyRaisedException(difficulty.currentBits());
+            }
             logger.warn("REJECTED: Invalid proof-of-work for tag {} at idx {}", tag, idx);
             return false;
         }
+        if (!ownsIndex.test(idx)) {
+            logger.warn("REJECTED: idx {} belongs to another shard", idx);
+            return false;
+        }
+        if (isRepeat(tag, idx)) {
+            logger.info("DUPLICATE: tag {} at idx {} is already stored, not storing it again", tag, idx);
+            return true;
+        }
 
         if (activeBoard.isOverloaded()) {
             checkAndResize();
         }
-        return activeBoard.add(idx, value, tag, dbManager);
+        boolean stored = writeToActive(board -> board.add(idx, value, tag, writer));
+        if (stored) {
+            replayFilter.record(tag, idx);
+            signalArrival(tag);
+        }
+        return stored;
     }
 
     @Override
     public Pair get(long idx, String preimage) throws RemoteException {
+        return checkOut(idx, Encryption.preimageToTag(preimage));
+    }
+
+    @Override
+    public Pair getOrWait(long idx, String preimage, long timeoutMs) throws RemoteException {
         String tag = Encryption.preimageToTag(preimage);
+        long deadline = System.currentTimeMillis() + Math.min(Math.max(timeoutMs, 0), MAX_WAIT_MS);
+        while (true) {
+            // Registered before looking, so an add between the lookup and the wait still wakes us
+            CompletableFuture<Void> arrival = new CompletableFuture<>();
+            arrivals.compute(tag, (t, waiting) -> {
+                Set<CompletableFuture<Void>> registered = waiting != null ? waiting : ConcurrentHashMap.newKeySet();
+                registered.add(arrival);
+                return registered;
+            });
+            try {
+                Pair pair = checkOut(idx, tag);
+                long remaining = deadline - System.currentTimeMillis();
+                if (pair != null || remaining <= 0) {
+                    return pair;
+                }
+                arrival.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e); // arrivals are never completed exceptionally
+            } finally {
+                arrivals.computeIfPresent(tag, (t, waiting) -> {
+                    waiting.remove(arrival);
+                    return waiting.isEmpty() ? null : waiting;
+                });
+            }
+        }
+    }
 
-        // Prevent processing a message that is already checked out
-        if (checkedOutMessages.containsKey(tag)) {
-            return null;
+    // Wakes the callers waiting for this tag and notifies its push subscribers.
+    private void signalArrival(String tag) {
+        Set<CompletableFuture<Void>> waiting = arrivals.remove(tag);
+        if (waiting != null) {
+            waiting.forEach(arrival -> arrival.complete(null));
         }
+        deliveryDispatcher.messageArrived(tag);
+    }
 
-        // Search draining boards first
-        for (BoardGeneration board : drainingBoards) {
-            Pair result = board.findAndRemoveFromBucket(idx, tag);
-            if (result != null) {
-                checkedOutMessages.put(tag, new CheckedOutMessage(board, idx, tag, result.value()));
-                if (board.getTotalCount() == 0) {
-                    drainingBoards.remove(board);
-                }
-                return result;
+    @Override
+    public boolean subscribe(List<String> tags, DeliveryListener listener) throws RemoteException {
+        if (!deliveryDispatcher.subscribe(tags, listener)) {
+            return false;
+        }
+        // Messages that arrived before the subscription are announced right away
+        for (String tag : tags) {
+            if (isOnBoard(tag)) {
+                deliveryDispatcher.messageArrived(tag);
             }
         }
+        logger.debug("PUSH: Subscribed listener to {} tag(s)", tags.size());
+        return true;
+    }
 
-        // Search active board
-        Pair result = activeBoard.findAndRemoveFromBucket(idx, tag);
-        if (result != null) {
-            checkedOutMessages.put(tag, new CheckedOutMessage(activeBoard, idx, tag, result.value()));
-        }
-        return result;
+    @Override
+    public void unsubscribe(DeliveryListener listener) throws RemoteException {
+        deliveryDispatcher.unsubscribe(listener);
+    }
+
+    @Override
+    public int getDifficulty() {
+        return difficulty.currentBits();
     }
 
     @Override
     public boolean confirm(long idx, String tag) throws RemoteException {
         logger.debug("CONFIRM received for tag: {}", tag);
-
-        // Best-effort cleanup of in-memory state first.
-        checkedOutMessages.remove(tag);
-
-        // Also clean up from the main buckets in case this is a retry after a server crash.
-        // This makes the confirm idempotent for the in-memory state.
-        activeBoard.findAndRemoveFromBucket(idx, tag);
-        drainingBoards.forEach(b -> b.findAndRemoveFromBucket(idx, tag));
+        releaseFromMemory(idx, tag);
 
         try {
             // The authoritative step: delete from durable storage.
-            dbManager.deleteMessage(tag);
+            writer.delete(idx, tag);
             logger.info("CONFIRMED and deleted message with tag: {}", tag);
             return true;
         } catch (Exception e) {
@@ -142,22 +334,405 @@ public class BulletinBoardImpl implements BulletinBoard {
         }
     }
 
-    public void cleanUpOrphanedMessages() {
-        long now = System.currentTimeMillis();
-        List<String> orphanedTags = new ArrayList<>();
+    @Override
+    public boolean[] addBatch(List<AddRequest> requests) throws RemoteException {
+        boolean[] results = new boolean[requests.size()];
+        List<Integer> verified = new ArrayList<>(requests.size());
+        difficulty.recordAdds(requests.size());
+        int acceptedBits = difficulty.acceptedBits();
+        for (int i = 0; i < requests.size(); i++) {
+            AddRequest request = requests.get(i);
+            if (!ProofOfWork.verifyProof(request.tag(), request.idx(), request.nonce(), acceptedBits)) {
+                logger.warn("REJECTED: Invalid proof-of-work for tag {} at idx {}", request.tag(), request.idx());
+            } else if (!ownsIndex.test(request.idx())) {
+                logger.warn("REJECTED: idx {} belongs to another shard", request.idx());
+            } else if (isRepeat(request.tag(), request.idx())) {
+                logger.info("DUPLICATE: tag {} at idx {} is already stored, not storing it again", request.tag(), request.idx());
+                results[i] = true;
+            } else {
+                verified.add(i);
+            }
+        }
+        if (verified.isEmpty()) return results;
+
+        if (activeBoard.isOverloaded()) {
+            checkAndResize();
+        }
+        List<AddRequest> accepted = verified.stream().map(requests::get).toList();
+        boolean[] stored = writeToActive(board -> board.addAll(accepted, writer));
+        int storedCount = 0;
+        for (int i = 0; i < stored.length; i++) {
+            results[verified.get(i)] = stored[i];
+            if (stored[i]) {
+                storedCount++;
+                replayFilter.record(accepted.get(i).tag(), accepted.get(i).idx());
+                signalArrival(accepted.get(i).tag());
+            }
+        }
+        logger.info("BATCH ADD: stored {} of {} messages", storedCount, requests.size());
+        return results;
+    }
+
+    @Override
+    public List<Pair> getBatch(List<GetRequest> requests) throws RemoteException {
+        List<Pair> results = new ArrayList<>(requests.size());
+        for (GetRequest request : requests) {
+            // One failed read must not cost the messages already checked out for this batch; a failed entry is
+            // back on the board (or gone for good) and its slot is answered null
+            try {
+                results.add(checkOut(request.idx(), Encryption.preimageToTag(request.preimage())));
+            } catch (RemoteException e) {
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean[] confirmBatch(List<ConfirmRequest> requests) throws RemoteException {
+        for (ConfirmRequest request : requests) {
+            releaseFromMemory(request.idx(), request.tag());
+        }
+
+        try {
+            writer.deleteAll(requests);
+            logger.info("CONFIRMED and deleted batch of {} messages", requests.size());
+        } catch (Exception e) {
+            // Same reasoning as the single confirm: a failed delete means the rows are most likely already gone.
+            logger.warn("DB Delete failed on batch confirm of {} tags. Assuming already deleted.", requests.size(), e);
+        }
+        boolean[] results = new boolean[requests.size()];
+        Arrays.fill(results, true);
+        return results;
+    }
+
+    // A replay filter hit is only a hint: the message counts as stored while it is on the board or checked out.
+    // Once it was confirmed, or on a false match, the add goes ahead and the writer still refuses a stored tag.
+    private boolean isRepeat(String tag, long idx) {
+        return replayFilter.seen(tag, idx) && (isOnBoard(tag) || checkedOutMessages.containsKey(tag));
+    }
 
+    private boolean isOnBoard(String tag) {
+        return (tagIndex != null ? tagIndex.containsKey(tag) : onAnyGeneration(tag)) || parkedEntries.containsKey(tag);
+    }
+
+    // Asks each generation's buckets without taking a cell lock, so an entry the migration is moving right now
+    // can be missed. Callers only lose an early push announcement or the duplicate answer to a retried add.
+    private boolean onAnyGeneration(String tag) {
+        for (BoardGeneration board : drainingBoards) {
+            if (board.buckets.containsTag(tag)) return true;
+        }
+        return activeBoard.buckets.containsTag(tag);
+    }
+
+    // Moves a message from its bucket to the checked-out set, or returns null if it is not (or no longer) on the board.
+    private Pair checkOut(long idx, String tag) throws RemoteException {
+        // Prevent processing a message that is already checked out
+        if (checkedOutMessages.containsKey(tag)) {
+            return null;
+        }
+
+        TakenMessage taken = takeFromBoard(idx, tag);
+        return taken == null ? null : checkOutFound(taken.board(), idx, tag, taken.value());
+    }
+
+    private record TakenMessage(BoardGeneration board, StoredValue value) {}
+
+    // Removes a message from the generation holding it, found through the tag index or by trying each generation.
+    // A parked entry is taken without a generation; it is only handed out for an idx that maps to its cell.
+    private TakenMessage takeFromBoard(long idx, String tag) {
+        if (tagIndex != null) {
+            BoardGeneration board = tagIndex.get(tag);
+            if (board != null) {
+                return takeIndexed(board, idx, tag);
+            }
+        } else {
+            TakenMessage taken = takeFromAnyGeneration(idx, tag);
+            if (taken != null) return taken;
+        }
+        ParkedEntry parked = parkedEntries.get(tag);
+        if (parked != null && Math.floorMod(idx, (long) parked.capacity()) == parked.cell() && parkedEntries.remove(tag, parked)) {
+            return new TakenMessage(null, parked.value());
+        }
+        return null;
+    }
+
+    // The migration can move the entry between the index read and the removal, in which case the index has
+    // changed and is followed again.
+    private TakenMessage takeIndexed(BoardGeneration board, long idx, String tag) {
+        while (board != null) {
+            StoredValue stored = board.findAndRemoveFromBucket(idx, tag);
+            if (stored != null) {
+                return new TakenMessage(board, stored);
+            }
+            BoardGeneration current = tagIndex.get(tag);
+            if (current == board) {
+                return null; // indexed there, but not under this idx
+            }
+            board = current;
+        }
+        return null;
+    }
+
+    // Tries the idx's cell in every generation, oldest first. The migration only moves entries into a newer
+    // generation and holds both cells meanwhile, so the pass cannot step over an entry in flight. A resize during
+    // the pass can make a generation active that was not tried yet, so the pass is repeated then.
+    private TakenMessage takeFromAnyGeneration(long idx, String tag) {
+        while (true) {
+            BoardGeneration active = activeBoard;
+            for (BoardGeneration board : drainingBoards) {
+                StoredValue stored = board.findAndRemoveFromBucket(idx, tag);
+                if (stored != null) return new TakenMessage(board, stored);
+            }
+            StoredValue stored = active.findAndRemoveFromBucket(idx, tag);
+            if (stored != null) return new TakenMessage(active, stored);
+            if (activeBoard == active) return null;
+        }
+    }
+
+    // The entry is already off its bucket and the tag index here, so a failed read must not just return: the
+    // entry goes back on the board if the read failed, or its remains are deleted if storage has no row for it.
+    private Pair checkOutFound(BoardGeneration board, long idx, String tag, StoredValue stored) throws RemoteException {
+        byte[] value;
+        try {
+            value = resolve(tag, stored);
+        } catch (RuntimeException e) {
+            logger.error("Reading message with tag {} failed, returning it to the board", tag, e);
+            returnToBoard(new CheckedOutMessage(board, idx, tag, stored));
+            throw new RemoteException("Storage read failed", e);
+        }
+        if (value == null) {
+            logger.error("Message with tag {} was on the board but is missing from storage", tag);
+            try {
+                writer.delete(idx, tag);
+            } catch (Exception e) {
+                logger.warn("Cleanup of missing message with tag {} failed", tag, e);
+            }
+            throw new RemoteException("Message is missing from storage");
+        }
+        checkedOutMessages.put(tag, new CheckedOutMessage(board, idx, tag, stored));
+        checkoutExpiry.schedule(tag, CHECKOUT_TIMEOUT_MS);
+        leases.grant(tag, idx, System.currentTimeMillis() + CHECKOUT_TIMEOUT_MS);
+        return new Pair(value, tag);
+    }
+
+    // Returns the ciphertext of a bucket entry, reading it from storage in lazy mode.
+    private byte[] resolve(String tag, StoredValue stored) {
+        return switch (stored) {
+            case StoredValue.Inline inline -> inline.bytes();
+            case StoredValue.OnDisk onDisk -> {
+                byte[] cached = valueCache.get(tag);
+                yield cached != null ? cached : store.readValue(tag, onDisk.locator());
+            }
+        };
+    }
+
+    // What a bucket keeps for a freshly stored message.
+    private StoredValue toStoredValue(String tag, byte[] value, long locator) {
+        if (!lazyValues) {
+            return new StoredValue.Inline(value);
+        }
+        valueCache.put(tag, value);
+        return new StoredValue.OnDisk(locator);
+    }
+
+    // Best-effort cleanup of in-memory state before a confirm deletes the message from storage.
+    private void releaseFromMemory(long idx, String tag) {
+        if (checkedOutMessages.remove(tag) != null) {
+            leases.release(tag);
+        }
+        checkoutExpiry.cancel(tag);
+        valueCache.remove(tag);
+
+        // Also clean up from the main buckets in case this is a retry after a server crash.
+        // This makes the confirm idempotent for the in-memory state.
+        takeFromBoard(idx, tag);
+    }
+
+    // Called by the expiry wheel once a checkout passed its deadline without a confirm.
+    private void expireCheckout(String tag) {
+        CheckedOutMessage checkedOut = checkedOutMessages.remove(tag);
+        if (checkedOut == null) return; // confirmed meanwhile
+        leases.release(tag);
+        returnToBoard(checkedOut);
+        logger.warn("TIMED OUT message with tag: {}. Returned to board.", tag);
+    }
+
+    // A timed-out message goes back into the active generation. Its original generation may have been retired
+    // meanwhile, so a message that changes generation is relocated in storage as well.
+    private void returnToBoard(CheckedOutMessage checkedOut) {
+        BoardGeneration board = writeToActive(b -> {
+            b.putBack(checkedOut.idx, checkedOut.tag, checkedOut.value);
+            return b;
+        });
+        signalArrival(checkedOut.tag);
+        if (board == checkedOut.board) return;
+        try {
+            writer.relocateAll(List.of(new MessageStore.Relocation(checkedOut.tag, board.computeIndex(checkedOut.idx), board.capacity)));
+        } catch (Exception e) {
+            logger.warn("Relocation of returned message with tag {} failed. Storage keeps its old location.", checkedOut.tag, e);
+        }
+    }
+
+    // Runs a write against the active generation, retrying if that generation was retired in the meantime.
+    private <T> T writeToActive(Function<BoardGeneration, T> write) {
+        while (true) {
+            BoardGeneration board = activeBoard;
+            if (board.enter()) {
+                try {
+                    return write.apply(board);
+                } finally {
+                    board.exit();
+                }
+            }
+        }
+    }
+
+    // One migration slice. Walks the draining generations oldest first, moving entries into the active one
+    // until the time budget is spent. A generation is retired once it is empty.
+    private void migrateSlice() {
+        try {
+            long deadline = System.nanoTime() + migrationSliceNanos;
+            for (BoardGeneration from : drainingBoards) {
+                while (System.nanoTime() < deadline) {
+                    if (from.getTotalCount() == 0 && from.tryRetire()) {
+                        drainingBoards.remove(from);
+                        logger.info("MIGRATION: Generation of size {} retired. {} draining generation(s) left, {} message(s) without a stored idx parked", from.capacity, drainingBoards.size(), parkedEntries.size());
+                        break;
+                    }
+                    if (!migrateBatch(from)) break;
+                }
+                if (System.nanoTime() >= deadline) return;
+            }
+        } catch (RuntimeException e) {
+            logger.error("MIGRATION: Slice failed", e);
+        }
+    }
+
+    // Moves the next batch of entries of a generation and persists their new locations.
+    // Returns false once a full pass over the generation has been completed.
+    private boolean migrateBatch(BoardGeneration from) {
+        List<BucketStore.Entry> entries = new ArrayList<>(MIGRATION_SCAN_SIZE);
+        int next = from.buckets.scan(from.migrationCursor, MIGRATION_SCAN_SIZE, entries);
+        from.migrationCursor = Math.max(next, 0);
+
+        BoardGeneration to = activeBoard;
+        List<MessageStore.Relocation> relocations = new ArrayList<>(entries.size());
+        for (BucketStore.Entry entry : entries) {
+            // Stored before the idx was persisted, so parked by tag instead; storage keeps its old location
+            if (entry.idx() == MessageStore.UNKNOWN_IDX) {
+                from.park(entry.cell(), entry.tag());
+                continue;
+            }
+            int targetCell = to.computeIndex(entry.idx());
+            if (from.moveTo(to, entry.cell(), targetCell, entry.tag(), entry.idx())) {
+                relocations.add(new MessageStore.Relocation(entry.tag(), targetCell, to.capacity));
+            }
+        }
+        if (!relocations.isEmpty()) {
+            writer.relocateAll(relocations);
+            logger.debug("MIGRATION: Moved {} messages from size {} to size {}", relocations.size(), from.capacity, to.capacity);
+        }
+        return next >= 0;
+    }
+
+    // --- Replication ---
+
+    // Hands every committed group of writes to the listener, e.g. a ReplicationShipper on a primary.
+    public void setCommitListener(GroupCommitWriter.CommitListener listener) {
+        writer.setCommitListener(listener);
+    }
+
+    // Replica side: stores a message shipped by the primary, which already checked its proof-of-work.
+    // Returns false if the message is already here.
+    public boolean applyReplicatedAdd(long idx, String tag, byte[] value) {
+        if (isOnBoard(tag) || checkedOutMessages.containsKey(tag)) return false;
+        if (activeBoard.isOverloaded()) {
+            checkAndResize();
+        }
+        boolean stored = writeToActive(board -> board.add(idx, value, tag, writer));
+        if (stored) {
+            signalArrival(tag);
+        }
+        return stored;
+    }
+
+    // Replica side: drops every message, on the board or checked out, whose tag is not in the set.
+    // Returns how many were dropped. A message that migrates during the scan may be missed until the next call.
+    public int retainOnly(Set<String> tags) throws RemoteException {
+        List<ConfirmRequest> stale = new ArrayList<>();
+        List<BoardGeneration> generations = new ArrayList<>(drainingBoards);
+        generations.add(activeBoard);
+        List<BucketStore.Entry> entries = new ArrayList<>(MIGRATION_SCAN_SIZE);
+        for (BoardGeneration board : generations) {
+            int cursor = 0;
+            while (cursor >= 0) {
+                entries.clear();
+                cursor = board.buckets.scan(cursor, MIGRATION_SCAN_SIZE, entries);
+                for (BucketStore.Entry entry : entries) {
+                    if (!tags.contains(entry.tag())) {
+                        stale.add(new ConfirmRequest(entry.idx(), entry.tag()));
+                    }
+                }
+            }
+        }
+        // Parked entries cannot be found without their idx, so they are dropped from memory here
+        parkedEntries.keySet().removeIf(tag -> !tags.contains(tag) && stale.add(new ConfirmRequest(MessageStore.UNKNOWN_IDX, tag)));
         for (CheckedOutMessage checkedOut : checkedOutMessages.values()) {
-            if (now - checkedOut.timestamp > CHECKOUT_TIMEOUT_MS) {
-                // Return the message to its original board
-                checkedOut.board.putBack(checkedOut.idx, checkedOut.tag, checkedOut.value);
-                orphanedTags.add(checkedOut.tag);
-                logger.warn("TIMED OUT message with tag: {}. Returned to board.", checkedOut.tag);
+            if (!tags.contains(checkedOut.tag)) {
+                stale.add(new ConfirmRequest(checkedOut.idx, checkedOut.tag));
             }
         }
-        // Remove all orphaned messages from the checkout list
-        orphanedTags.forEach(checkedOutMessages::remove);
+        if (!stale.isEmpty()) {
+            confirmBatch(stale);
+        }
+        return stale.size();
     }
 
+    // Flushes outstanding writes; called on server shutdown before the database is closed.
+    public void shutdown() {
+        checkoutExpiry.shutdown();
+        deliveryDispatcher.shutdown();
+        migrator.shutdown();
+        try {
+            migrator.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.shutdown();
+        logger.info("DUPLICATE: {} repeated add(s) answered by the replay filter, {} new", replayFilter.getHits(), replayFilter.getMisses());
+        logger.info("EXPIRY: {} checkout(s) expired, average expiry latency {} ms, max {} ms", getExpiredCheckoutCount(),
+                String.format("%.1f", getAverageCheckoutExpiryLatencyMs()), getMaxCheckoutExpiryLatencyMs());
+    }
+
+    // Writes waiting for the group commit writer to pick them up
+    public int getWriteQueueDepth() {
+        return writer.getQueueDepth();
+    }
+
+    // --- Checkout expiry metrics ---
+
+    public long getExpiredCheckoutCount() {
+        return checkoutExpiry.getExpiredCount();
+    }
+
+    // Time between a checkout's deadline and its return to the board
+    public double getAverageCheckoutExpiryLatencyMs() {
+        return checkoutExpiry.getAverageExpiryLatencyMs();
+    }
+
+    public long getMaxCheckoutExpiryLatencyMs() {
+        return checkoutExpiry.getMaxExpiryLatencyMs();
+    }
+
+    // Both called under the cell lock of the bucket that gained or lost the tag
+    private void indexTag(String tag, BoardGeneration board) {
+        if (tagIndex != null) tagIndex.put(tag, board);
+    }
+
+    private void unindexTag(String tag, BoardGeneration board) {
+        if (tagIndex != null) tagIndex.remove(tag, board);
+    }
 
     private synchronized void checkAndResize() {
         if (activeBoard.isOverloaded()) {
@@ -169,69 +744,187 @@ public class BulletinBoardImpl implements BulletinBoard {
         }
     }
 
-    private static class BoardGeneration {
+    private class BoardGeneration {
         private final int capacity;
-        private final List<Map<String, byte[]>> buckets;
+        private final BucketStore buckets;
         private final AtomicInteger totalItems = new AtomicInteger(0);
+        // Writers currently inside this generation, and whether it was retired; see enter() and tryRetire()
+        private final AtomicInteger writers = new AtomicInteger(0);
+        private volatile boolean retired = false;
+        // Only touched by the migration thread
+        private int migrationCursor = 0;
 
         public BoardGeneration(int size) {
             this.capacity = size;
-            this.buckets = new ArrayList<>(size);
-            for (int i = 0; i < size; i++) {
-                buckets.add(new ConcurrentHashMap<>());
-            }
+            this.buckets = offHeapBuckets ? new OffHeapBucketStore() : new MapBucketStore(size);
         }
 
-        public void loadMessage(ServerDatabaseManager.PersistedMessage msg) {
+        public void loadMessage(MessageStore.PersistedMessage msg) {
             int index = msg.cellIndex();
-            if (index >= 0 && index < this.capacity) {
-                this.buckets.get(index).put(msg.messageTag(), msg.messageValue());
-                this.totalItems.incrementAndGet();
-            } else {
+            if (index < 0 || index >= this.capacity) {
                 logger.error("LOAD ERROR: Message tag {} stored with index {} does not fit in board size {}. Data integrity compromised.", msg.messageTag(), index, this.capacity);
+            } else if (!buckets.accepts(msg.messageTag())) {
+                logger.error("LOAD ERROR: Message tag {} cannot be held by the bucket store. Skipped.", msg.messageTag());
+            } else {
+                StoredValue stored = lazyValues ? new StoredValue.OnDisk(msg.locator()) : new StoredValue.Inline(msg.messageValue());
+                synchronized (buckets.lockFor(index)) {
+                    this.buckets.put(index, msg.messageTag(), msg.idx(), stored);
+                    indexTag(msg.messageTag(), this);
+                }
+                this.totalItems.incrementAndGet();
             }
         }
 
-        public void putBack(long idx, String tag, byte[] value) {
+        public void putBack(long idx, String tag, StoredValue value) {
             int index = computeIndex(idx);
-            Map<String, byte[]> cell = buckets.get(index);
-            synchronized (cell) {
+            synchronized (buckets.lockFor(index)) {
                 // Put back and increment count
-                cell.put(tag, value);
+                buckets.put(index, tag, idx, value);
+                indexTag(tag, this);
                 totalItems.incrementAndGet();
             }
         }
 
-        public boolean add(long idx, byte[] value, String tag, ServerDatabaseManager db) {
+        // The cell monitor is only held to check for a duplicate and to queue the write, not while the group
+        // commits, so concurrent adds to the same cell share one transaction. Two adds of the same tag can both
+        // pass the check; the store stores the first and answers NO_LOCATOR to the second.
+        public boolean add(long idx, byte[] value, String tag, GroupCommitWriter writer) {
+            if (!buckets.accepts(tag)) {
+                logger.warn("REJECTED: Tag {} is not a base64 SHA-256 hash", tag);
+                return false;
+            }
             int index = computeIndex(idx);
-            Map<String, byte[]> cell = buckets.get(index);
-            synchronized (cell) {
-                if (cell.containsKey(tag)) return false;
-                try {
-                    db.saveMessage(index, this.capacity, tag, value);
-                    cell.put(tag, value);
+            long locator;
+            try {
+                CompletableFuture<Long> saved;
+                synchronized (buckets.lockFor(index)) {
+                    if (buckets.contains(index, tag)) return false;
+                    saved = writer.saveAsync(new MessageStore.PersistedMessage(idx, index, this.capacity, tag, value));
+                }
+                locator = writer.await(saved);
+            } catch (Exception e) {
+                logger.error("DB Save failed", e);
+                return false;
+            }
+            if (locator == MessageStore.NO_LOCATOR) {
+                return false;
+            }
+            synchronized (buckets.lockFor(index)) {
+                if (buckets.putIfAbsent(index, tag, idx, toStoredValue(tag, value, locator))) {
+                    indexTag(tag, this);
                     totalItems.incrementAndGet();
-                    return true;
-                } catch (Exception e) {
-                    logger.error("DB Save failed", e);
-                    return false;
                 }
             }
+            return true;
         }
 
-        public Pair findAndRemoveFromBucket(long idx, String tag) {
+        // Stores a batch of messages with one database transaction. Duplicates are filtered in a single
+        // pass over the buckets; the database remains the final arbiter for concurrent adds of the same tag.
+        public boolean[] addAll(List<AddRequest> requests, GroupCommitWriter writer) {
+            boolean[] results = new boolean[requests.size()];
+            List<Integer> candidates = new ArrayList<>(requests.size());
+            List<MessageStore.PersistedMessage> toSave = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                AddRequest request = requests.get(i);
+                int index = computeIndex(request.idx());
+                if (!buckets.accepts(request.tag()) || buckets.contains(index, request.tag())) continue;
+                candidates.add(i);
+                toSave.add(new MessageStore.PersistedMessage(request.idx(), index, this.capacity, request.tag(), request.value()));
+            }
+            if (toSave.isEmpty()) return results;
+
+            long[] locators;
+            try {
+                locators = writer.saveAll(toSave);
+            } catch (Exception e) {
+                logger.error("DB batch save failed", e);
+                return results;
+            }
+
+            for (int i = 0; i < locators.length; i++) {
+                if (locators[i] == MessageStore.NO_LOCATOR) continue;
+                MessageStore.PersistedMessage msg = toSave.get(i);
+                synchronized (buckets.lockFor(msg.cellIndex())) {
+                    if (buckets.putIfAbsent(msg.cellIndex(), msg.messageTag(), msg.idx(), toStoredValue(msg.messageTag(), msg.messageValue(), locators[i]))) {
+                        indexTag(msg.messageTag(), this);
+                        totalItems.incrementAndGet();
+                    }
+                }
+                results[candidates.get(i)] = true;
+            }
+            return results;
+        }
+
+        public StoredValue findAndRemoveFromBucket(long idx, String tag) {
             int index = computeIndex(idx);
-            Map<String, byte[]> cell = buckets.get(index);
-            byte[] value;
-            synchronized (cell) {
-                value = cell.remove(tag);
+            StoredValue value;
+            synchronized (buckets.lockFor(index)) {
+                value = buckets.remove(index, tag);
+                if (value != null) {
+                    unindexTag(tag, this);
+                }
             }
             if (value != null) {
                 // Decrement count only if found and removed
                 totalItems.decrementAndGet();
-                return new Pair(value, tag);
             }
-            return null;
+            return value;
+        }
+
+        // Moves one entry into another generation. Both cells stay locked during the move, so a lookup that
+        // checks this generation before the target always finds the entry in one of them.
+        public boolean moveTo(BoardGeneration target, int cell, int targetCell, String tag, long idx) {
+            synchronized (buckets.lockFor(cell)) {
+                synchronized (target.buckets.lockFor(targetCell)) {
+                    StoredValue value = buckets.remove(cell, tag);
+                    if (value == null) return false; // checked out meanwhile
+                    if (!target.buckets.putIfAbsent(targetCell, tag, idx, value)) {
+                        buckets.put(cell, tag, idx, value);
+                        return false;
+                    }
+                    indexTag(tag, target);
+                    totalItems.decrementAndGet();
+                    target.totalItems.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        // Moves an entry without a stored idx out of the buckets and into the parked entries.
+        public void park(int cell, String tag) {
+            synchronized (buckets.lockFor(cell)) {
+                StoredValue value = buckets.remove(cell, tag);
+                if (value == null) return; // checked out meanwhile
+                // Parked before the index entry goes, so a lookup that misses the bucket finds it there
+                parkedEntries.put(tag, new ParkedEntry(capacity, cell, value));
+                unindexTag(tag, this);
+                totalItems.decrementAndGet();
+            }
+        }
+
+        // Registers a writer. Returns false if the generation was retired and the active one must be used instead.
+        public boolean enter() {
+            writers.incrementAndGet();
+            if (retired) {
+                writers.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        public void exit() {
+            writers.decrementAndGet();
+        }
+
+        // Marks the generation retired unless a writer is still inside or it is not empty. Setting the flag
+        // before reading the writer count (and enter() doing the reverse) means at least one side sees the other.
+        public boolean tryRetire() {
+            retired = true;
+            if (writers.get() == 0 && totalItems.get() == 0) {
+                return true;
+            }
+            retired = false;
+            return false;
         }
 
         public boolean isOverloaded() {
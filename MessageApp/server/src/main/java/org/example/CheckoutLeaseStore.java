@@ -0,0 +1,167 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Persists checkout leases (messages handed out by get but not yet confirmed) in a small SQLite file next to
+// the message store, so a restarted server keeps them checked out instead of delivering them again.
+// Lease changes are fire-and-forget: a background thread commits whatever queued up in one transaction,
+// without a full fsync. A crash can lose the last few changes, which only means a few redeliveries.
+public class CheckoutLeaseStore {
+    private static final Logger log = LoggerFactory.getLogger(CheckoutLeaseStore.class);
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private static final String GRANT_SQL = "INSERT OR REPLACE INTO checkout_lease(message_tag, message_idx, expires_at) VALUES(?,?,?)";
+    private static final String RELEASE_SQL = "DELETE FROM checkout_lease WHERE message_tag = ?";
+
+    private final String dbUrl;
+    private final BlockingQueue<LeaseChange> queue = new LinkedBlockingQueue<>();
+    private Connection connection;
+    // Only used by the writer thread
+    private PreparedStatement grantStmt;
+    private PreparedStatement releaseStmt;
+    private Thread writerThread;
+    private volatile boolean running = true;
+
+    // expiresAt is in epoch milliseconds, so the remaining time survives a restart
+    public record Lease(String messageTag, long idx, long expiresAt) {}
+
+    // Either a grant (lease set) or a release (releaseTag set)
+    private record LeaseChange(Lease lease, String releaseTag) {}
+
+    public CheckoutLeaseStore(String dbPath) {
+        this.dbUrl = "jdbc:sqlite:" + dbPath;
+    }
+
+    public void initialize() {
+        String sql = """
+                CREATE TABLE IF NOT EXISTS checkout_lease (
+                    message_tag TEXT PRIMARY KEY,
+                    message_idx INTEGER NOT NULL,
+                    expires_at INTEGER NOT NULL
+                );
+                """;
+        try {
+            connection = DriverManager.getConnection(dbUrl);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = WAL;");
+                // Losing the newest leases on a crash is acceptable, so commits skip the fsync
+                stmt.execute("PRAGMA synchronous = NORMAL;");
+                stmt.execute(sql);
+            }
+            grantStmt = connection.prepareStatement(GRANT_SQL);
+            releaseStmt = connection.prepareStatement(RELEASE_SQL);
+            log.info("Checkout lease store initialized.");
+        } catch (SQLException e) {
+            log.error("Error initializing the checkout lease store", e);
+            throw new RuntimeException("Failed to initialize the checkout lease store", e);
+        }
+
+        writerThread = new Thread(this::writeLoop, "Checkout-Lease-Writer-Thread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Reads all stored leases. Called during recovery, before any lease changes are queued.
+    public List<Lease> loadLeases() {
+        List<Lease> leases = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT message_tag, message_idx, expires_at FROM checkout_lease")) {
+            while (rs.next()) {
+                leases.add(new Lease(rs.getString("message_tag"), rs.getLong("message_idx"), rs.getLong("expires_at")));
+            }
+        } catch (SQLException e) {
+            log.error("Error loading checkout leases", e);
+            throw new RuntimeException("Failed to load checkout leases", e);
+        }
+        return leases;
+    }
+
+    public void grant(String messageTag, long idx, long expiresAt) {
+        queue.add(new LeaseChange(new Lease(messageTag, idx, expiresAt), null));
+    }
+
+    public void release(String messageTag) {
+        queue.add(new LeaseChange(null, messageTag));
+    }
+
+    public void releaseAll(List<String> messageTags) {
+        for (String tag : messageTags) {
+            release(tag);
+        }
+    }
+
+    // Commits the queued changes and closes the database.
+    public void close() {
+        running = false;
+        try {
+            if (writerThread != null) {
+                writerThread.join();
+            }
+            if (connection != null) {
+                grantStmt.close();
+                releaseStmt.close();
+                connection.close();
+            }
+            log.info("Checkout lease store closed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            log.error("Error closing the checkout lease store", e);
+        }
+    }
+
+    private void writeLoop() {
+        List<LeaseChange> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                LeaseChange first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Applies the changes in queue order, so a grant followed by a release of the same tag ends up released.
+    private void flush(List<LeaseChange> batch) {
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (LeaseChange change : batch) {
+                    if (change.lease() != null) {
+                        grantStmt.setString(1, change.lease().messageTag());
+                        grantStmt.setLong(2, change.lease().idx());
+                        grantStmt.setLong(3, change.lease().expiresAt());
+                        grantStmt.executeUpdate();
+                    } else {
+                        releaseStmt.setString(1, change.releaseTag());
+                        releaseStmt.executeUpdate();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // Leases are an optimization; a lost batch only means those messages may be delivered again
+            log.error("Error writing {} checkout lease change(s)", batch.size(), e);
+        }
+    }
+}
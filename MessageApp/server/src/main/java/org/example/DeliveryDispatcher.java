@@ -0,0 +1,116 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the push subscriptions of clients and notifies their listeners when a subscribed tag arrives.
+// Callbacks are remote calls, so they run on a small bounded pool; when its queue is full a notification is
+// dropped and the client finds the message on its next fallback poll. A listener whose callback fails is
+// assumed gone and loses all its subscriptions. Besides the overall limit every listener has a limit of its own,
+// so a single client cannot take all the slots and leave the others to polling.
+public class DeliveryDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(DeliveryDispatcher.class);
+
+    private final int maxSubscriptions = Integer.getInteger("bulletin.push.maxSubscriptions", 100_000);
+    private final int maxSubscriptionsPerListener = Integer.getInteger("bulletin.push.maxSubscriptionsPerListener", 1000);
+    private final ThreadPoolExecutor executor;
+
+    // Both guarded by this
+    private final Map<String, Set<DeliveryListener>> listenersByTag = new HashMap<>();
+    private final Map<DeliveryListener, Set<String>> tagsByListener = new HashMap<>();
+    private int subscriptionCount = 0;
+
+    public DeliveryDispatcher() {
+        int threads = Integer.getInteger("bulletin.push.threads", 4);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Integer.getInteger("bulletin.push.queueSize", 10_000)),
+                r -> {
+                    Thread t = new Thread(r, "Delivery-Dispatcher-Thread");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    // Returns false if accepting the tags would exceed the overall or the listener's subscription limit.
+    public synchronized boolean subscribe(List<String> tags, DeliveryListener listener) {
+        if (subscriptionCount + tags.size() > maxSubscriptions) {
+            log.warn("PUSH: Subscription limit of {} reached, rejecting {} tag(s)", maxSubscriptions, tags.size());
+            return false;
+        }
+        Set<String> current = tagsByListener.getOrDefault(listener, Set.of());
+        if (current.size() + tags.size() > maxSubscriptionsPerListener) {
+            log.warn("PUSH: Listener already holds {} subscription(s), limit {}, rejecting {} tag(s)",
+                    current.size(), maxSubscriptionsPerListener, tags.size());
+            return false;
+        }
+        Set<String> listenerTags = tagsByListener.computeIfAbsent(listener, l -> new HashSet<>());
+        for (String tag : tags) {
+            if (listenerTags.add(tag)) {
+                listenersByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(listener);
+                subscriptionCount++;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void unsubscribe(DeliveryListener listener) {
+        Set<String> tags = tagsByListener.remove(listener);
+        if (tags == null) return;
+        for (String tag : tags) {
+            Set<DeliveryListener> listeners = listenersByTag.get(tag);
+            if (listeners != null && listeners.remove(listener)) {
+                subscriptionCount--;
+                if (listeners.isEmpty()) listenersByTag.remove(tag);
+            }
+        }
+    }
+
+    // Fires and removes the subscriptions for the tag.
+    public void messageArrived(String tag) {
+        Set<DeliveryListener> listeners;
+        synchronized (this) {
+            listeners = listenersByTag.remove(tag);
+            if (listeners == null) return;
+            for (DeliveryListener listener : listeners) {
+                Set<String> tags = tagsByListener.get(listener);
+                if (tags != null) {
+                    tags.remove(tag);
+                    if (tags.isEmpty()) tagsByListener.remove(listener);
+                }
+                subscriptionCount--;
+            }
+        }
+
+        for (DeliveryListener listener : listeners) {
+            try {
+                executor.execute(() -> notify(listener, tag));
+            } catch (RejectedExecutionException e) {
+                log.warn("PUSH: Dispatcher queue full, notification for tag {} dropped", tag);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void notify(DeliveryListener listener, String tag) {
+        try {
+            listener.messagesAvailable(List.of(tag));
+        } catch (RemoteException e) {
+            log.warn("PUSH: Listener unreachable, dropping its subscriptions: {}", e.getMessage());
+            unsubscribe(listener);
+        }
+    }
+}
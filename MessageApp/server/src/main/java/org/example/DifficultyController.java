@@ -0,0 +1,121 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// Sets the proof-of-work difficulty from the server's load. Once a second it takes an EWMA of the add rate
+// and the number of pending requests (in flight or waiting for a slot). Every doubling of the rate over the
+// target rate adds a bit, and a backlog past its threshold adds more. The difficulty rises at once but falls by at most one bit per second.
+// Clients read the difficulty with getDifficulty before they solve and cache it for up to 10 s. For a grace
+// period longer than that, a proof for any difficulty that was current during it is still accepted, so a client
+// whose cached value went stale is not refused. Past the grace period the old level is refused, and add tells
+// the client the new difficulty instead of answering false.
+public class DifficultyController {
+    private static final Logger log = LoggerFactory.getLogger(DifficultyController.class);
+    private static final long SAMPLE_MS = 1000;
+    private static final double ALPHA = 0.3;
+
+    private final IntSupplier pendingRequests;
+    // Below the starting difficulty, so a quiet server becomes cheaper to use
+    private final int minBits = Integer.getInteger("bulletin.pow.minBits", ProofOfWork.DIFFICULTY_BITS - 2);
+    private final int maxBits = Integer.getInteger("bulletin.pow.maxBits", 24);
+    private final double targetAddRate = Integer.getInteger("bulletin.pow.targetRate", 20);
+    private final int queueThreshold = Integer.getInteger("bulletin.pow.queueThreshold", 64);
+    // The client's cache lifetime plus the time a solve and a send may take
+    private final long graceMs = Long.getLong("bulletin.pow.graceMs", 15_000);
+
+    private final LongAdder addsSinceSample = new LongAdder();
+    private final ScheduledExecutorService sampler;
+    // Earlier difficulties and when they were replaced, newest last; only touched by the sampler
+    private final Deque<Announced> history = new ArrayDeque<>();
+    private volatile int currentBits;
+    private volatile int acceptedBits;
+    private double addRate = -1;
+    private long lastSample = System.currentTimeMillis();
+
+    private record Announced(int bits, long replacedAt) {}
+
+    public DifficultyController(IntSupplier pendingRequests) {
+        this.pendingRequests = pendingRequests;
+        this.currentBits = Math.clamp(ProofOfWork.DIFFICULTY_BITS, minBits, maxBits);
+        this.acceptedBits = currentBits;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Difficulty-Controller-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Until started the difficulty stays at its initial value
+    public void start() {
+        sampler.scheduleWithFixedDelay(this::sample, SAMPLE_MS, SAMPLE_MS, TimeUnit.MILLISECONDS);
+        log.info("DIFFICULTY: Adapting between {} and {} bits, starting at {}", minBits, maxBits, currentBits);
+    }
+
+    public void shutdown() {
+        sampler.shutdownNow();
+    }
+
+    // Counts add requests, valid or not; a flood of bad proofs is load as well
+    public void recordAdds(int count) {
+        addsSinceSample.add(count);
+    }
+
+    // The difficulty clients should solve for now
+    public int currentBits() {
+        return currentBits;
+    }
+
+    // The lowest difficulty a proof may have to be accepted now
+    public int acceptedBits() {
+        return acceptedBits;
+    }
+
+    public int minBits() {
+        return minBits;
+    }
+
+    private void sample() {
+        long now = System.currentTimeMillis();
+        double seconds = Math.max(now - lastSample, 1) / 1000.0;
+        lastSample = now;
+        double rate = addsSinceSample.sumThenReset() / seconds;
+        addRate = addRate < 0 ? rate : ALPHA * rate + (1 - ALPHA) * addRate;
+        int pending = pendingRequests.getAsInt();
+
+        int target = minBits + bitsOver(addRate, targetAddRate);
+        if (pending >= queueThreshold) {
+            target += 1 + bitsOver(pending, queueThreshold);
+        }
+        target = Math.clamp(target, minBits, maxBits);
+        int next = target > currentBits ? target : Math.max(target, currentBits - 1);
+        if (next != currentBits) {
+            history.addLast(new Announced(currentBits, now));
+            log.info("DIFFICULTY: {} -> {} bits (add rate {}/s, {} pending request(s))",
+                    currentBits, next, String.format("%.1f", addRate), pending);
+            currentBits = next;
+        }
+
+        while (!history.isEmpty() && now - history.peekFirst().replacedAt() > graceMs) {
+            history.removeFirst();
+        }
+        int accepted = currentBits;
+        for (Announced announced : history) {
+            accepted = Math.min(accepted, announced.bits());
+        }
+        acceptedBits = accepted;
+    }
+
+    // Whole doublings of value over base, rounded up
+    private static int bitsOver(double value, double base) {
+        return value <= base ? 0 : (int) Math.ceil(Math.log(value / base) / Math.log(2));
+    }
+}
@@ -0,0 +1,152 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Hashed timing wheel for key expiry. Scheduling and cancelling are O(1): a timer is appended to the slot of
+// its deadline tick, and a cancel only drops it from the pending map, so the wheel skips it when its slot
+// comes up. One thread advances the wheel a tick at a time and hands expired keys to the callback, at most
+// about one tick after their deadline. Deadlines beyond one rotation simply stay in their slot for another turn.
+// Timers may be scheduled before start(); they expire once the thread runs.
+public final class ExpiryWheel {
+    private static final Logger log = LoggerFactory.getLogger(ExpiryWheel.class);
+
+    private final long tickNanos;
+    private final List<Queue<Timer>> slots;
+    private final Map<String, Timer> pending = new ConcurrentHashMap<>();
+    private final Consumer<String> onExpire;
+    private final long startNanos = System.nanoTime();
+    private final Thread wheelThread;
+    private volatile boolean running = true;
+    // Last tick whose slot has been processed
+    private volatile long processedTick = -1;
+
+    // --- Metrics ---
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private record Timer(String key, long deadlineNanos) {}
+
+    public ExpiryWheel(String name, long tickMs, int slotCount, Consumer<String> onExpire) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        List<Queue<Timer>> wheel = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        this.slots = List.copyOf(wheel);
+        this.onExpire = onExpire;
+        this.wheelThread = new Thread(this::run, name);
+        this.wheelThread.setDaemon(true);
+    }
+
+    public void start() {
+        wheelThread.start();
+    }
+
+    // Schedules the key to expire after the delay, replacing an earlier timer for the same key.
+    public void schedule(String key, long delayMs) {
+        Timer timer = new Timer(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs)));
+        pending.put(key, timer);
+        enqueue(timer);
+    }
+
+    public void cancel(String key) {
+        pending.remove(key);
+    }
+
+    public void shutdown() {
+        running = false;
+        if (!wheelThread.isAlive()) return;
+        wheelThread.interrupt();
+        try {
+            wheelThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    // Time between a deadline and the moment its key was handed to the callback
+    public double getAverageExpiryLatencyMs() {
+        long count = expiredCount.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / 1e6 / count;
+    }
+
+    public long getMaxExpiryLatencyMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    // Puts the timer in the slot of its deadline tick. A tick is never placed less than two ticks ahead of the
+    // last processed one, so it cannot land in a slot the wheel thread is draining right now.
+    private void enqueue(Timer timer) {
+        long tick = Math.max((timer.deadlineNanos() - startNanos) / tickNanos, processedTick + 2);
+        slots.get((int) (tick % slots.size())).add(timer);
+    }
+
+    private void run() {
+        while (running) {
+            long tick = processedTick + 1;
+            long tickEnd = startNanos + (tick + 1) * tickNanos;
+            long wait;
+            while (running && (wait = tickEnd - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+            if (!running) break;
+
+            try {
+                expireSlot(tick);
+            } catch (RuntimeException e) {
+                log.error("EXPIRY: Processing tick {} failed", tick, e);
+            }
+            processedTick = tick;
+        }
+    }
+
+    private void expireSlot(long tick) {
+        Queue<Timer> slot = slots.get((int) (tick % slots.size()));
+        List<Timer> due = new ArrayList<>();
+        List<Timer> later = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Timer timer = slot.poll(); timer != null; timer = slot.poll()) {
+            if (pending.get(timer.key()) != timer) continue; // cancelled or rescheduled
+            if (timer.deadlineNanos() > now) {
+                later.add(timer); // due in a later rotation
+            } else {
+                due.add(timer);
+            }
+        }
+        later.forEach(this::enqueue);
+
+        for (Timer timer : due) {
+            if (!pending.remove(timer.key(), timer)) continue;
+            long latency = System.nanoTime() - timer.deadlineNanos();
+            expiredCount.incrementAndGet();
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            onExpire.accept(timer.key());
+        }
+        if (!due.isEmpty()) {
+            log.debug("EXPIRY: {} key(s) expired. Average expiry latency {} ms, max {} ms",
+                    due.size(), String.format("%.1f", getAverageExpiryLatencyMs()), getMaxExpiryLatencyMs());
+        }
+    }
+}
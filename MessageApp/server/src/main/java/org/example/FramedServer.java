@@ -0,0 +1,305 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Second front end for the board, next to RMI. It speaks the FrameCodec protocol over plain TCP: one selector
+// thread accepts connections and reads and writes frames without blocking, and each request runs on its own
+// virtual thread against the same board the RMI registry exports. Responses carry the request id, so a client
+// may pipeline many calls on one connection and get the answers in any order.
+// Push delivery needs a callback object and is RMI-only; subscribe is not part of this protocol.
+// A connection has at most -Dbulletin.nio.maxInFlight requests running or answered but not yet written; past
+// that its socket is not read until responses drain, so a client that pipelines without reading stalls only itself.
+// At most -Dbulletin.nio.maxConnections connections are open at once; one accepted beyond that is closed right away.
+public class FramedServer {
+    private static final Logger log = LoggerFactory.getLogger(FramedServer.class);
+    private static final int READ_BUFFER_BYTES = 8192;
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("bulletin.nio.maxInFlight", 64);
+
+    private final BulletinBoard board;
+    private final int port;
+    private final int maxConnections = Integer.getInteger("bulletin.nio.maxConnections", 1024);
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    // Connections with responses waiting, handed from the handlers to the selector thread
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running = true;
+    // Open client connections, only touched by the selector thread
+    private int connections;
+
+    public FramedServer(BulletinBoard board, int port) {
+        this.board = board;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        selectorThread = new Thread(this::selectLoop, "Framed-Transport-Selector-Thread");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Framed transport listening on port: {}", port);
+    }
+
+    public void shutdown() {
+        running = false;
+        if (selector == null) return;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            log.error("Error closing the framed transport", e);
+        }
+        handlers.shutdown();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                log.error("Framed transport selector failed", e);
+                break;
+            }
+            for (Connection connection = pendingWrites.poll(); connection != null; connection = pendingWrites.poll()) {
+                connection.enableWrites();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) connection.read();
+                        if (key.isValid() && key.isWritable()) connection.write();
+                    }
+                } catch (IOException | CancelledKeyException e) {
+                    if (key.attachment() instanceof Connection connection) {
+                        log.debug("Framed connection closed: {}", e.getMessage());
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        if (connections >= maxConnections) {
+            log.warn("REJECTED: Framed connection from {} closed, {} connections already open", channel.getRemoteAddress(), connections);
+            channel.close();
+            return;
+        }
+        connections++;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    // Decodes and runs one request. Never throws: failures go back to the client as an ERROR frame.
+    private ByteBuffer handle(ByteBuffer body) {
+        FrameCodec.Frame frame = FrameCodec.decode(body);
+        try {
+            return dispatch(frame).finish();
+        } catch (DifficultyRaisedException e) {
+            return new FrameCodec.Writer(frame.requestId(), FrameCodec.DIFFICULTY_RAISED).putInt(e.requiredBits()).finish();
+        } catch (Exception e) {
+            log.warn("Framed request {} (type {}) failed: {}", frame.requestId(), frame.type(), e.toString());
+            return new FrameCodec.Writer(frame.requestId(), FrameCodec.ERROR).putString(String.valueOf(e.getMessage())).finish();
+        }
+    }
+
+    private FrameCodec.Writer dispatch(FrameCodec.Frame frame) throws Exception {
+        ByteBuffer in = frame.payload();
+        FrameCodec.Writer out = new FrameCodec.Writer(frame.requestId(), FrameCodec.OK);
+        switch (frame.type()) {
+            case FrameCodec.ADD -> {
+                AddRequest request = FrameCodec.getAddRequest(in);
+                out.putBoolean(board.add(request.idx(), request.value(), request.tag(), request.nonce()));
+            }
+            case FrameCodec.GET -> {
+                GetRequest request = FrameCodec.getGetRequest(in);
+                out.putPair(board.get(request.idx(), request.preimage()));
+            }
+            case FrameCodec.CONFIRM -> {
+                ConfirmRequest request = FrameCodec.getConfirmRequest(in);
+                out.putBoolean(board.confirm(request.idx(), request.tag()));
+            }
+            case FrameCodec.GET_OR_WAIT -> {
+                GetRequest request = FrameCodec.getGetRequest(in);
+                out.putPair(board.getOrWait(request.idx(), request.preimage(), in.getLong()));
+            }
+            case FrameCodec.ADD_BATCH -> {
+                List<AddRequest> requests = new ArrayList<>();
+                for (int i = in.getInt(); i > 0; i--) {
+                    requests.add(FrameCodec.getAddRequest(in));
+                }
+                boolean[] results = board.addBatch(requests);
+                out.putInt(results.length);
+                for (boolean result : results) out.putBoolean(result);
+            }
+            case FrameCodec.GET_BATCH -> {
+                List<GetRequest> requests = new ArrayList<>();
+                for (int i = in.getInt(); i > 0; i--) {
+                    requests.add(FrameCodec.getGetRequest(in));
+                }
+                List<Pair> pairs = board.getBatch(requests);
+                out.putInt(pairs.size());
+                for (Pair pair : pairs) out.putPair(pair);
+            }
+            case FrameCodec.CONFIRM_BATCH -> {
+                List<ConfirmRequest> requests = new ArrayList<>();
+                for (int i = in.getInt(); i > 0; i--) {
+                    requests.add(FrameCodec.getConfirmRequest(in));
+                }
+                boolean[] results = board.confirmBatch(requests);
+                out.putInt(results.length);
+                for (boolean result : results) out.putBoolean(result);
+            }
+            case FrameCodec.GET_DIFFICULTY -> out.putInt(board.getDifficulty());
+            default -> throw new IllegalArgumentException("Unknown request type " + frame.type());
+        }
+        return out;
+    }
+
+    // State of one client connection. Reading and writing happen on the selector thread only;
+    // the handlers just queue their responses.
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private SelectionKey key;
+        // Requests handed to the handlers whose response is not fully written yet
+        private int unanswered;
+        private boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            dispatchFrames();
+        }
+
+        // Hands the complete frames in the buffer to the handlers, as long as the in-flight limit allows, and
+        // reads from the socket again only while it does.
+        private void dispatchFrames() throws IOException {
+            in.flip();
+            while (in.remaining() >= FrameCodec.LENGTH_BYTES) {
+                int length = in.getInt(in.position());
+                if (length < FrameCodec.HEADER_BYTES || length > FrameCodec.MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (in.remaining() < FrameCodec.LENGTH_BYTES + length || unanswered >= MAX_IN_FLIGHT) break;
+
+                ByteBuffer body = ByteBuffer.allocate(length);
+                in.position(in.position() + FrameCodec.LENGTH_BYTES);
+                in.get(in.position(), body.array(), 0, length);
+                in.position(in.position() + length);
+                unanswered++;
+                handlers.execute(() -> respond(handle(body)));
+            }
+            in.compact();
+            setInterest(SelectionKey.OP_READ, unanswered < MAX_IN_FLIGHT);
+
+            // Make room for a frame larger than the buffer
+            if (in.position() >= FrameCodec.LENGTH_BYTES) {
+                int needed = FrameCodec.LENGTH_BYTES + in.getInt(0);
+                if (needed > in.capacity()) {
+                    ByteBuffer larger = ByteBuffer.allocate(needed);
+                    in.flip();
+                    larger.put(in);
+                    in = larger;
+                }
+            }
+        }
+
+        void respond(ByteBuffer response) {
+            responses.add(response);
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        void enableWrites() {
+            setInterest(SelectionKey.OP_WRITE, true);
+        }
+
+        void write() throws IOException {
+            boolean wasPaused = unanswered >= MAX_IN_FLIGHT;
+            try {
+                for (ByteBuffer response = responses.peek(); response != null; response = responses.peek()) {
+                    channel.write(response);
+                    if (response.hasRemaining()) return; // socket buffer full, continue when writable again
+                    responses.poll();
+                    unanswered--;
+                }
+                // A response queued after this point also re-enables writes through pendingWrites
+                setInterest(SelectionKey.OP_WRITE, false);
+            } finally {
+                // Frames that arrived while reading was paused may already be in the buffer
+                if (wasPaused && unanswered < MAX_IN_FLIGHT && key.isValid()) {
+                    dispatchFrames();
+                }
+            }
+        }
+
+        private void setInterest(int op, boolean on) {
+            if (key.isValid()) {
+                key.interestOps(on ? key.interestOps() | op : key.interestOps() & ~op);
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            connections--;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing framed connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for message persistence. Callers enqueue their write and block until it is durable;
+// a single writer thread drains everything that queued up meanwhile and commits it as one transaction,
+// so concurrent adds and confirms share one fsync instead of paying one each. Writes take effect in queue
+// order: the engines apply a transaction's deletes, inserts and relocations in an order of their own, so a
+// second write to a tag already in the group (a confirm right behind its add, say) starts a new transaction.
+public class GroupCommitWriter {
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final int MAX_BATCH_SIZE = 512;
+
+    private final MessageStore store;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    // Guards running together with the queue, so no write is queued after the writer thread saw the last one
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+    private volatile CommitListener commitListener;
+
+    // An insert (message set), a delete (delete set) or a relocation, completed once its transaction committed
+    private record PendingWrite(MessageStore.PersistedMessage message, ConfirmRequest delete, MessageStore.Relocation relocation,
+                                CompletableFuture<Long> done) {}
+
+    // Told about every committed group on the writer thread, in commit order, so it must not block.
+    // Only inserts that were actually stored are passed on; relocations are local and left out.
+    public interface CommitListener {
+        void committed(List<MessageStore.PersistedMessage> saves, List<ConfirmRequest> deletes);
+    }
+
+    public GroupCommitWriter(MessageStore store) {
+        this.store = store;
+        this.writerThread = new Thread(this::writeLoop, "Group-Commit-Writer-Thread");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    // Persists a message and returns its locator, or NO_LOCATOR if the tag is already stored.
+    // Throws if the write failed.
+    public long save(MessageStore.PersistedMessage message) {
+        return await(saveAsync(message));
+    }
+
+    // Queues a message without waiting, so the caller can release its locks before awaiting the commit.
+    // The future completes like save returns; pass it to await.
+    public CompletableFuture<Long> saveAsync(MessageStore.PersistedMessage message) {
+        return enqueue(new PendingWrite(message, null, null, new CompletableFuture<>()));
+    }
+
+    // Persists several messages, returning per message its locator or NO_LOCATOR.
+    public long[] saveAll(List<MessageStore.PersistedMessage> messages) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(messages.size());
+        for (MessageStore.PersistedMessage message : messages) {
+            futures.add(enqueue(new PendingWrite(message, null, null, new CompletableFuture<>())));
+        }
+        long[] locators = new long[messages.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            locators[i] = await(futures.get(i));
+        }
+        return locators;
+    }
+
+    public void delete(long idx, String tag) {
+        await(enqueue(new PendingWrite(null, new ConfirmRequest(idx, tag), null, new CompletableFuture<>())));
+    }
+
+    public void deleteAll(List<ConfirmRequest> deletes) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(deletes.size());
+        for (ConfirmRequest delete : deletes) {
+            futures.add(enqueue(new PendingWrite(null, delete, null, new CompletableFuture<>())));
+        }
+        futures.forEach(this::await);
+    }
+
+    public void relocateAll(List<MessageStore.Relocation> relocations) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(relocations.size());
+        for (MessageStore.Relocation relocation : relocations) {
+            futures.add(enqueue(new PendingWrite(null, null, relocation, new CompletableFuture<>())));
+        }
+        futures.forEach(this::await);
+    }
+
+    public void setCommitListener(CommitListener listener) {
+        this.commitListener = listener;
+    }
+
+    // Stops accepting work and waits until everything already queued has been committed.
+    public void shutdown() {
+        synchronized (lock) {
+            running = false;
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Group commit writer stopped.");
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private CompletableFuture<Long> enqueue(PendingWrite write) {
+        synchronized (lock) {
+            if (!running) {
+                throw new IllegalStateException("Group commit writer is shut down");
+            }
+            queue.add(write);
+        }
+        return write.done();
+    }
+
+    // Waits for a queued write and rethrows its failure unwrapped.
+    public long await(CompletableFuture<Long> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Left early only when interrupted; whatever is still queued will never be committed
+        synchronized (lock) {
+            running = false;
+        }
+        List<PendingWrite> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        if (!abandoned.isEmpty()) {
+            IllegalStateException stopped = new IllegalStateException("Group commit writer stopped");
+            abandoned.forEach(write -> write.done().completeExceptionally(stopped));
+            log.warn("Group commit writer stopped with {} write(s) uncommitted", abandoned.size());
+        }
+    }
+
+    // Splits the drained writes into runs without a repeated tag and commits them in order.
+    private void flush(List<PendingWrite> batch) {
+        Set<String> tags = new HashSet<>();
+        int start = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (!tags.add(tagOf(batch.get(i)))) {
+                commit(batch.subList(start, i));
+                tags.clear();
+                tags.add(tagOf(batch.get(i)));
+                start = i;
+            }
+        }
+        commit(batch.subList(start, batch.size()));
+    }
+
+    private static String tagOf(PendingWrite write) {
+        if (write.message() != null) return write.message().messageTag();
+        if (write.delete() != null) return write.delete().tag();
+        return write.relocation().messageTag();
+    }
+
+    // Commits one group and completes every caller in it.
+    private void commit(List<PendingWrite> batch) {
+        List<MessageStore.PersistedMessage> saves = new ArrayList<>();
+        List<PendingWrite> saveWrites = new ArrayList<>();
+        List<ConfirmRequest> deletes = new ArrayList<>();
+        List<String> deleteTags = new ArrayList<>();
+        List<MessageStore.Relocation> relocations = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.message() != null) {
+                saves.add(write.message());
+                saveWrites.add(write);
+            } else if (write.delete() != null) {
+                deletes.add(write.delete());
+                deleteTags.add(write.delete().tag());
+            } else {
+                relocations.add(write.relocation());
+            }
+        }
+
+        try {
+            long[] locators = store.writeBatch(saves, deleteTags, relocations);
+            for (int i = 0; i < saveWrites.size(); i++) {
+                saveWrites.get(i).done().complete(locators[i]);
+            }
+            notifyCommitted(saves, locators, deletes);
+            for (PendingWrite write : batch) {
+                write.done().complete(MessageStore.NO_LOCATOR); // no-op for the inserts completed above
+            }
+            log.debug("GROUP COMMIT: {} inserts, {} deletes and {} relocations in one transaction", saves.size(), deletes.size(), relocations.size());
+        } catch (RuntimeException e) {
+            batch.forEach(write -> write.done().completeExceptionally(e));
+        }
+    }
+
+    private void notifyCommitted(List<MessageStore.PersistedMessage> saves, long[] locators, List<ConfirmRequest> deletes) {
+        CommitListener listener = commitListener;
+        if (listener == null || (saves.isEmpty() && deletes.isEmpty())) return;
+        List<MessageStore.PersistedMessage> stored = new ArrayList<>(saves.size());
+        for (int i = 0; i < saves.size(); i++) {
+            if (locators[i] != MessageStore.NO_LOCATOR) {
+                stored.add(saves.get(i));
+            }
+        }
+        try {
+            listener.committed(stored, deletes);
+        } catch (RuntimeException e) {
+            log.error("Commit listener failed", e);
+        }
+    }
+}
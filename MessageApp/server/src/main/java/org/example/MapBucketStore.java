@@ -0,0 +1,73 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The original layout: one ConcurrentHashMap per cell, which also serves as the cell's lock.
+class MapBucketStore implements BucketStore {
+    private final List<Map<String, Slot>> cells;
+
+    private record Slot(long idx, StoredValue value) {}
+
+    MapBucketStore(int capacity) {
+        this.cells = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            cells.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public boolean accepts(String tag) {
+        return true;
+    }
+
+    @Override
+    public boolean contains(int cell, String tag) {
+        return cells.get(cell).containsKey(tag);
+    }
+
+    // Looks through every cell, which is why the board keeps a tag index in front of this layout.
+    @Override
+    public boolean containsTag(String tag) {
+        for (Map<String, Slot> cell : cells) {
+            if (cell.containsKey(tag)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void put(int cell, String tag, long idx, StoredValue value) {
+        cells.get(cell).put(tag, new Slot(idx, value));
+    }
+
+    @Override
+    public boolean putIfAbsent(int cell, String tag, long idx, StoredValue value) {
+        return cells.get(cell).putIfAbsent(tag, new Slot(idx, value)) == null;
+    }
+
+    @Override
+    public StoredValue remove(int cell, String tag) {
+        Slot slot = cells.get(cell).remove(tag);
+        return slot == null ? null : slot.value();
+    }
+
+    @Override
+    public Object lockFor(int cell) {
+        return cells.get(cell);
+    }
+
+    // The cursor is a cell index; cells are taken whole.
+    @Override
+    public int scan(int cursor, int limit, List<Entry> out) {
+        int cell = cursor;
+        while (cell < cells.size() && out.size() < limit) {
+            for (Map.Entry<String, Slot> entry : cells.get(cell).entrySet()) {
+                out.add(new Entry(cell, entry.getKey(), entry.getValue().idx()));
+            }
+            cell++;
+        }
+        return cell < cells.size() ? cell : -1;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Durable storage engine behind the bulletin board. Writes arrive in groups from the GroupCommitWriter;
+// an implementation must make a whole group durable before writeBatch returns.
+public interface MessageStore {
+    // Returned for inserts that were not stored, and carried by messages whose location is not known yet
+    long NO_LOCATOR = -1;
+    // Carried by messages stored before the board index was persisted; they cannot be moved to another generation
+    long UNKNOWN_IDX = Long.MIN_VALUE;
+
+    // A stored message. The locator tells the engine where the value lives (a rowid or a file position),
+    // so the value itself may be null when streamed without values.
+    record PersistedMessage(long idx, int cellIndex, int boardCapacity, String messageTag, byte[] messageValue, long locator) {
+        public PersistedMessage(long idx, int cellIndex, int boardCapacity, String messageTag, byte[] messageValue) {
+            this(idx, cellIndex, boardCapacity, messageTag, messageValue, NO_LOCATOR);
+        }
+    }
+
+    // Moves a stored message to another cell and board generation.
+    record Relocation(String messageTag, int cellIndex, int boardCapacity) {}
+
+    // Opens or creates the underlying storage and recovers its state.
+    void initialize();
+
+    // Applies the deletes, the inserts and then the relocations as one durable unit. Relocations of messages that
+    // are no longer stored are ignored. Returns per insert the locator of the stored value, or NO_LOCATOR when the
+    // tag already exists.
+    long[] writeBatch(List<PersistedMessage> saves, List<String> deleteTags, List<Relocation> relocations);
+
+    // Streams one partition of the stored messages to the consumer without materializing them all.
+    // Partitions 0..partitionCount-1 together cover every message exactly once and may be read in parallel
+    // during recovery, before any writes are issued. Streaming may also run while writes go on; messages written
+    // meanwhile may or may not be included. Without values only the locators are read.
+    void streamMessages(int partition, int partitionCount, boolean withValues, Consumer<PersistedMessage> consumer);
+
+    // Reads the value of a stored message, or returns null if the message is no longer stored.
+    byte[] readValue(String messageTag, long locator);
+
+    void close();
+}
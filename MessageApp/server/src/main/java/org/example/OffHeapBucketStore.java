@@ -0,0 +1,300 @@
+package org.example;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+// Compact layout for a board generation. Instead of one map per cell, the whole generation is a single
+// open-addressing table keyed by the 32-byte SHA-256 tag held as four longs, so an empty cell costs nothing
+// and an entry costs a few dozen bytes. Inline ciphertexts live off-heap in a size-class arena.
+// Tags are unique per generation (the store enforces this too), so the cell is kept as an attribute of the entry.
+class OffHeapBucketStore implements BucketStore {
+    private static final int TAG_BYTES = 32;
+    private static final int TAG_CHARS = 44; // base64 of 32 bytes, one padding character
+    private static final int INITIAL_SLOTS = 16;
+    private static final double MAX_FILL = 0.75;
+    private static final int LOCK_STRIPES = 64;
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+    // Length marker for entries that only hold a store locator
+    private static final int ON_DISK = -1;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ValueArena arena = new ValueArena();
+
+    // Slot arrays, guarded by this
+    private long[] keys = new long[INITIAL_SLOTS * 4];
+    private long[] refs = new long[INITIAL_SLOTS];
+    private long[] idxs = new long[INITIAL_SLOTS];
+    private int[] cells = new int[INITIAL_SLOTS];
+    private int[] lengths = new int[INITIAL_SLOTS];
+    private byte[] states = new byte[INITIAL_SLOTS];
+    private int size;
+    private int used; // full + deleted slots
+
+    OffHeapBucketStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean accepts(String tag) {
+        return decode(tag) != null;
+    }
+
+    @Override
+    public synchronized boolean contains(int cell, String tag) {
+        long[] key = decode(tag);
+        if (key == null) return false;
+        int slot = find(key);
+        return slot >= 0 && cells[slot] == cell;
+    }
+
+    // A single probe of the table, so the board needs no on-heap tag index for this layout
+    @Override
+    public synchronized boolean containsTag(String tag) {
+        long[] key = decode(tag);
+        return key != null && find(key) >= 0;
+    }
+
+    @Override
+    public synchronized void put(int cell, String tag, long idx, StoredValue value) {
+        long[] key = decode(tag);
+        if (key == null) {
+            throw new IllegalArgumentException("Tag is not a base64 SHA-256 hash: " + tag);
+        }
+        int slot = find(key);
+        if (slot >= 0) {
+            release(slot);
+            store(slot, cell, idx, value);
+        } else {
+            insert(key, cell, idx, value);
+        }
+    }
+
+    @Override
+    public synchronized boolean putIfAbsent(int cell, String tag, long idx, StoredValue value) {
+        long[] key = decode(tag);
+        if (key == null || find(key) >= 0) return false;
+        insert(key, cell, idx, value);
+        return true;
+    }
+
+    @Override
+    public synchronized StoredValue remove(int cell, String tag) {
+        long[] key = decode(tag);
+        if (key == null) return null;
+        int slot = find(key);
+        if (slot < 0 || cells[slot] != cell) return null;
+
+        StoredValue value = lengths[slot] == ON_DISK
+                ? new StoredValue.OnDisk(refs[slot])
+                : new StoredValue.Inline(arena.read(refs[slot], lengths[slot]));
+        release(slot);
+        states[slot] = DELETED;
+        size--;
+        return value;
+    }
+
+    @Override
+    public Object lockFor(int cell) {
+        return locks[cell & (LOCK_STRIPES - 1)];
+    }
+
+    // The cursor is a slot index. A rehash reorders the slots, which a later pass over the table makes up for.
+    @Override
+    public synchronized int scan(int cursor, int limit, List<Entry> out) {
+        int slot = cursor;
+        for (; slot < states.length && out.size() < limit; slot++) {
+            if (states[slot] == FULL) {
+                out.add(new Entry(cells[slot], encode(slot), idxs[slot]));
+            }
+        }
+        return slot < states.length ? slot : -1;
+    }
+
+    // Returns the slot holding the key, or -1.
+    private int find(long[] key) {
+        int mask = states.length - 1;
+        for (int slot = (int) key[0] & mask; ; slot = (slot + 1) & mask) {
+            byte state = states[slot];
+            if (state == EMPTY) return -1;
+            if (state == FULL && matches(slot, key)) return slot;
+        }
+    }
+
+    private void insert(long[] key, int cell, long idx, StoredValue value) {
+        if (used + 1 > states.length * MAX_FILL) {
+            // Grow only when live entries need it; otherwise rehashing at the same size clears the tombstones
+            rehash(size + 1 > states.length * MAX_FILL / 2 ? states.length * 2 : states.length);
+        }
+        int mask = states.length - 1;
+        int slot = (int) key[0] & mask;
+        while (states[slot] == FULL) {
+            slot = (slot + 1) & mask;
+        }
+        if (states[slot] == EMPTY) used++;
+        System.arraycopy(key, 0, keys, slot * 4, 4);
+        states[slot] = FULL;
+        store(slot, cell, idx, value);
+        size++;
+    }
+
+    private void store(int slot, int cell, long idx, StoredValue value) {
+        cells[slot] = cell;
+        idxs[slot] = idx;
+        switch (value) {
+            case StoredValue.Inline inline -> {
+                refs[slot] = arena.write(inline.bytes());
+                lengths[slot] = inline.bytes().length;
+            }
+            case StoredValue.OnDisk onDisk -> {
+                refs[slot] = onDisk.locator();
+                lengths[slot] = ON_DISK;
+            }
+        }
+    }
+
+    private void release(int slot) {
+        if (lengths[slot] != ON_DISK) {
+            arena.free(refs[slot], lengths[slot]);
+        }
+    }
+
+    private void rehash(int slotCount) {
+        long[] oldKeys = keys;
+        long[] oldRefs = refs;
+        long[] oldIdxs = idxs;
+        int[] oldCells = cells;
+        int[] oldLengths = lengths;
+        byte[] oldStates = states;
+
+        keys = new long[slotCount * 4];
+        refs = new long[slotCount];
+        idxs = new long[slotCount];
+        cells = new int[slotCount];
+        lengths = new int[slotCount];
+        states = new byte[slotCount];
+        used = size;
+
+        int mask = slotCount - 1;
+        for (int old = 0; old < oldStates.length; old++) {
+            if (oldStates[old] != FULL) continue;
+            int slot = (int) oldKeys[old * 4] & mask;
+            while (states[slot] == FULL) {
+                slot = (slot + 1) & mask;
+            }
+            System.arraycopy(oldKeys, old * 4, keys, slot * 4, 4);
+            refs[slot] = oldRefs[old];
+            idxs[slot] = oldIdxs[old];
+            cells[slot] = oldCells[old];
+            lengths[slot] = oldLengths[old];
+            states[slot] = FULL;
+        }
+    }
+
+    private boolean matches(int slot, long[] key) {
+        int base = slot * 4;
+        return keys[base] == key[0] && keys[base + 1] == key[1] && keys[base + 2] == key[2] && keys[base + 3] == key[3];
+    }
+
+    // Parses a base64 SHA-256 tag into four longs. Returns null for anything else, including base64 strings
+    // that are not in canonical form, so two different tag strings never map onto the same key.
+    private static long[] decode(String tag) {
+        if (tag == null || tag.length() != TAG_CHARS) return null;
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(tag);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != TAG_BYTES || !Base64.getEncoder().encodeToString(bytes).equals(tag)) return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new long[]{buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()};
+    }
+
+    private String encode(int slot) {
+        ByteBuffer buffer = ByteBuffer.allocate(TAG_BYTES);
+        for (int i = 0; i < 4; i++) {
+            buffer.putLong(keys[slot * 4 + i]);
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    // Slab allocator for ciphertexts. Blocks come in power-of-two size classes carved out of large chunks;
+    // freed blocks are reused through per-class free lists. Chunks are released by the GC together with
+    // the generation. A reference is chunk index << 32 | offset.
+    private static final class ValueArena {
+        private static final int CHUNK_SIZE = 1 << 20;
+        private static final int MIN_CLASS_SHIFT = 5; // 32-byte blocks
+        private static final int MAX_CLASS_SHIFT = 20;
+
+        private final Arena arena = Arena.ofAuto();
+        private final List<MemorySegment> chunks = new ArrayList<>();
+        private final long[][] freeLists = new long[MAX_CLASS_SHIFT + 1][];
+        private final int[] freeCounts = new int[MAX_CLASS_SHIFT + 1];
+        private int currentChunk = -1;
+        private long currentOffset;
+
+        long write(byte[] value) {
+            long ref = allocate(value.length);
+            MemorySegment.copy(value, 0, chunks.get((int) (ref >>> 32)), ValueLayout.JAVA_BYTE, (int) ref, value.length);
+            return ref;
+        }
+
+        byte[] read(long ref, int length) {
+            byte[] value = new byte[length];
+            MemorySegment.copy(chunks.get((int) (ref >>> 32)), ValueLayout.JAVA_BYTE, (int) ref, value, 0, length);
+            return value;
+        }
+
+        void free(long ref, int length) {
+            int sizeClass = sizeClass(length);
+            if (sizeClass > MAX_CLASS_SHIFT) {
+                // Oversized values own their chunk; dropping it lets the GC reclaim the memory
+                chunks.set((int) (ref >>> 32), null);
+                return;
+            }
+            long[] list = freeLists[sizeClass];
+            if (list == null) {
+                list = freeLists[sizeClass] = new long[16];
+            } else if (freeCounts[sizeClass] == list.length) {
+                list = freeLists[sizeClass] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[freeCounts[sizeClass]++] = ref;
+        }
+
+        private long allocate(int length) {
+            int sizeClass = sizeClass(length);
+            if (sizeClass > MAX_CLASS_SHIFT) {
+                chunks.add(arena.allocate(length));
+                return (long) (chunks.size() - 1) << 32;
+            }
+            if (freeCounts[sizeClass] > 0) {
+                return freeLists[sizeClass][--freeCounts[sizeClass]];
+            }
+            int blockSize = 1 << sizeClass;
+            if (currentChunk < 0 || currentOffset + blockSize > CHUNK_SIZE) {
+                chunks.add(arena.allocate(CHUNK_SIZE));
+                currentChunk = chunks.size() - 1;
+                currentOffset = 0;
+            }
+            long ref = (long) currentChunk << 32 | currentOffset;
+            currentOffset += blockSize;
+            return ref;
+        }
+
+        private static int sizeClass(int length) {
+            return Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1));
+        }
+    }
+}
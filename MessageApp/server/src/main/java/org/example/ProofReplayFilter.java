@@ -0,0 +1,123 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers the (tag, idx) of every message accepted recently. Tags are fresh random values per message, so a
+// repeat is either a client retrying an add whose answer it lost, or a replay. The board checks it only after
+// the proof verified, and treats a hit as a hint that it confirms against the tag index before answering
+// that the message is already stored; a miss, the common case, skips those lookups.
+//
+// Entries are 64-bit fingerprints keyed with a per-process random key, so senders cannot aim for collisions,
+// and a false match needs a 1 in 2^64 coincidence. They live in two open-addressing tables: new entries go
+// into the current one, lookups check both, and the current table becomes the previous one every
+// -Dbulletin.replay.windowMs (or once it is half full). An entry is thus kept for one to two windows.
+public class ProofReplayFilter {
+    private static final long EMPTY = 0;
+    private static final int MAX_PROBES = 32;
+
+    private final int capacity = Integer.highestOneBit(Math.max(Integer.getInteger("bulletin.replay.capacity", 1 << 18), 64));
+    private final long windowMs = Long.getLong("bulletin.replay.windowMs", 120_000);
+    private final long key0;
+    private final long key1;
+
+    private volatile Table current = new Table();
+    private volatile Table previous = new Table();
+
+    // --- Metrics ---
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final class Table {
+        final AtomicLongArray slots = new AtomicLongArray(capacity);
+        final AtomicInteger size = new AtomicInteger();
+        final long createdAt = System.currentTimeMillis();
+
+        boolean contains(long fingerprint) {
+            int mask = capacity - 1;
+            for (int probe = 0, slot = (int) fingerprint & mask; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+                long found = slots.get(slot);
+                if (found == fingerprint) return true;
+                if (found == EMPTY) return false;
+            }
+            return false;
+        }
+
+        // False if no free slot was found within MAX_PROBES
+        boolean insert(long fingerprint) {
+            int mask = capacity - 1;
+            for (int probe = 0, slot = (int) fingerprint & mask; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+                long found = slots.get(slot);
+                if (found == fingerprint) return true;
+                if (found == EMPTY && slots.compareAndSet(slot, EMPTY, fingerprint)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                if (slots.get(slot) == fingerprint) return true; // lost the race to the same entry
+            }
+            return false;
+        }
+    }
+
+    public ProofReplayFilter() {
+        SecureRandom random = new SecureRandom();
+        this.key0 = random.nextLong();
+        this.key1 = random.nextLong();
+    }
+
+    // Whether a message with this tag was accepted at this index recently. Counts a hit or a miss.
+    public boolean seen(String tag, long idx) {
+        long fingerprint = fingerprint(tag, idx);
+        boolean seen = current.contains(fingerprint) || previous.contains(fingerprint);
+        (seen ? hits : misses).increment();
+        return seen;
+    }
+
+    // Called once a message is stored
+    public void record(String tag, long idx) {
+        long fingerprint = fingerprint(tag, idx);
+        Table table = current;
+        if (System.currentTimeMillis() - table.createdAt > windowMs || table.size.get() > capacity / 2) {
+            table = rotate(table);
+        }
+        // A run of MAX_PROBES taken slots is rare at half load; rotating for it would drop a whole table early,
+        // so the entry is skipped and a repeat of it is simply verified again
+        table.insert(fingerprint);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private synchronized Table rotate(Table expected) {
+        if (current == expected) {
+            previous = expected;
+            current = new Table();
+        }
+        return current;
+    }
+
+    // A keyed hash of the tag bytes, then of the index, with splitmix64 finalizers; never EMPTY
+    private long fingerprint(String tag, long idx) {
+        long h = key0;
+        for (byte b : tag.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ b) * 0x100000001b3L;
+        }
+        h = mix(h ^ key1);
+        h = mix(h ^ idx);
+        return h == EMPTY ? 1 : h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
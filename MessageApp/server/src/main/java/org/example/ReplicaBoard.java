@@ -0,0 +1,174 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// The board a replica exports to clients that fail over to it. Reads are served locally. Adds are refused,
+// since only the primary takes writes. A confirm is applied locally and then forwarded to the primary in the
+// background, so a message read from the replica is not delivered again once the primary is back.
+public class ReplicaBoard implements BulletinBoard {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaBoard.class);
+    private static final int BATCH_SIZE = 1000;
+    private static final long MAX_BACKOFF_MS = 8000;
+
+    private final BulletinBoard board;
+    private final ShardMap.Shard primary;
+    private final BlockingQueue<ConfirmRequest> forwardQueue;
+    private final Thread forwarderThread;
+    private volatile boolean running = true;
+    private BulletinBoard primaryStub;
+
+    public ReplicaBoard(BulletinBoard board, ShardMap.Shard primary) {
+        this.board = board;
+        this.primary = primary;
+        this.forwardQueue = new LinkedBlockingQueue<>(Integer.getInteger("bulletin.replication.queueSize", 100_000));
+        this.forwarderThread = new Thread(this::forwardLoop, "Confirm-Forwarder-Thread");
+        this.forwarderThread.setDaemon(true);
+        this.forwarderThread.start();
+    }
+
+    @Override
+    public boolean add(long idx, byte[] value, String tag, long nonce) {
+        log.warn("REJECTED: add for idx {} on a replica; writes go to the primary {}", idx, primary);
+        return false;
+    }
+
+    @Override
+    public boolean[] addBatch(List<AddRequest> requests) {
+        log.warn("REJECTED: batch add of {} message(s) on a replica; writes go to the primary {}", requests.size(), primary);
+        return new boolean[requests.size()];
+    }
+
+    @Override
+    public int getDifficulty() throws RemoteException {
+        return board.getDifficulty();
+    }
+
+    @Override
+    public Pair get(long idx, String preimage) throws RemoteException {
+        return board.get(idx, preimage);
+    }
+
+    @Override
+    public Pair getOrWait(long idx, String preimage, long timeoutMs) throws RemoteException {
+        return board.getOrWait(idx, preimage, timeoutMs);
+    }
+
+    @Override
+    public List<Pair> getBatch(List<GetRequest> requests) throws RemoteException {
+        return board.getBatch(requests);
+    }
+
+    @Override
+    public boolean subscribe(List<String> tags, DeliveryListener listener) throws RemoteException {
+        return board.subscribe(tags, listener);
+    }
+
+    @Override
+    public void unsubscribe(DeliveryListener listener) throws RemoteException {
+        board.unsubscribe(listener);
+    }
+
+    @Override
+    public boolean confirm(long idx, String tag) throws RemoteException {
+        boolean confirmed = board.confirm(idx, tag);
+        if (confirmed) {
+            forward(new ConfirmRequest(idx, tag));
+        }
+        return confirmed;
+    }
+
+    @Override
+    public boolean[] confirmBatch(List<ConfirmRequest> requests) throws RemoteException {
+        boolean[] results = board.confirmBatch(requests);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                forward(requests.get(i));
+            }
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        running = false;
+        forwarderThread.interrupt();
+        try {
+            forwarderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("REPLICATION: Confirm forwarder stopped with {} confirm(s) unforwarded", forwardQueue.size());
+    }
+
+    // Confirms not yet forwarded to the primary
+    public int getPendingForwards() {
+        return forwardQueue.size();
+    }
+
+    // A dropped confirm only means the primary delivers that message once more after the replica's copy is gone
+    private void forward(ConfirmRequest request) {
+        if (!forwardQueue.offer(request)) {
+            log.warn("REPLICATION: Forward queue full, confirm for tag {} not forwarded to {}", request.tag(), primary);
+        }
+    }
+
+    private void forwardLoop() {
+        List<ConfirmRequest> batch = new ArrayList<>(BATCH_SIZE);
+        long backoff = 1000;
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    ConfirmRequest first = forwardQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    forwardQueue.drainTo(batch, BATCH_SIZE - 1);
+                }
+                if (primaryStub == null) {
+                    primaryStub = (BulletinBoard) LocateRegistry.getRegistry(primary.host(), primary.port()).lookup("BulletinBoard");
+                }
+                boolean[] results = primaryStub.confirmBatch(batch);
+                // The primary answers false when it sheds load; those are kept for the next attempt
+                List<ConfirmRequest> refused = new ArrayList<>();
+                for (int i = 0; i < results.length; i++) {
+                    if (!results[i]) refused.add(batch.get(i));
+                }
+                log.debug("REPLICATION: Forwarded {} confirm(s) to {}", batch.size() - refused.size(), primary);
+                batch.clear();
+                batch.addAll(refused);
+                if (!refused.isEmpty()) {
+                    sleep(backoff);
+                }
+                backoff = 1000;
+            } catch (RemoteException | NotBoundException e) {
+                if (primaryStub != null || backoff == 1000) {
+                    log.warn("REPLICATION: Primary {} unreachable, holding {} confirm(s). {}",
+                            primary, batch.size() + forwardQueue.size(), e.getMessage());
+                }
+                primaryStub = null;
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Replica side of replication: applies what the primary's ReplicationShipper sends straight to the local board.
+// Adds skip the proof-of-work check, the primary already did it, and deletes are not forwarded anywhere.
+public class ReplicaSink implements ReplicationSink {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSink.class);
+
+    private final BulletinBoardImpl board;
+    // Tags received since beginSnapshot, or null outside a snapshot
+    private Set<String> snapshotTags;
+    private long appliedCount;
+
+    public ReplicaSink(BulletinBoardImpl board) {
+        this.board = board;
+    }
+
+    @Override
+    public synchronized void apply(List<ReplicatedChange> changes) throws RemoteException {
+        for (ReplicatedChange change : changes) {
+            if (change.isDelete()) {
+                board.confirm(change.idx(), change.tag());
+            } else {
+                board.applyReplicatedAdd(change.idx(), change.tag(), change.value());
+                if (snapshotTags != null) {
+                    snapshotTags.add(change.tag());
+                }
+            }
+        }
+        appliedCount += changes.size();
+        log.debug("REPLICATION: Applied {} change(s), {} in total", changes.size(), appliedCount);
+    }
+
+    @Override
+    public synchronized void beginSnapshot() {
+        snapshotTags = new HashSet<>();
+        log.info("REPLICATION: Receiving a snapshot from the primary");
+    }
+
+    @Override
+    public synchronized void endSnapshot() throws RemoteException {
+        if (snapshotTags == null) return;
+        int dropped = board.retainOnly(snapshotTags);
+        log.info("REPLICATION: Snapshot of {} message(s) applied, {} stale message(s) dropped", snapshotTags.size(), dropped);
+        snapshotTags = null;
+    }
+}
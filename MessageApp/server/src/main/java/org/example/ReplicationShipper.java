@@ -0,0 +1,180 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Primary side of replication. The group commit writer hands over every committed group, which only queues it,
+// so replication never slows down adds or confirms. A background thread ships the queue to the replica's
+// ReplicationSink in batches. When the replica cannot be reached, or falls so far behind that the queue
+// overflows, the queue is dropped and the replica is brought up to date with a snapshot of the store instead.
+public class ReplicationShipper implements GroupCommitWriter.CommitListener {
+    private static final Logger log = LoggerFactory.getLogger(ReplicationShipper.class);
+    private static final int BATCH_SIZE = 1000;
+    private static final long MAX_BACKOFF_MS = 8000;
+
+    private final ShardMap.Shard replica;
+    private final MessageStore store;
+    private final BlockingQueue<ReplicatedChange> queue;
+    private final Thread shipperThread;
+    private volatile boolean running = true;
+    // The replica's state is unknown at startup, so the first thing shipped is a snapshot
+    private volatile boolean needsSnapshot = true;
+    private ReplicationSink sink;
+
+    // --- Metrics ---
+    private final AtomicLong shippedCount = new AtomicLong();
+    private final AtomicLong snapshotCount = new AtomicLong();
+
+    public ReplicationShipper(ShardMap.Shard replica, MessageStore store) {
+        this.replica = replica;
+        this.store = store;
+        this.queue = new LinkedBlockingQueue<>(Integer.getInteger("bulletin.replication.queueSize", 100_000));
+        this.shipperThread = new Thread(this::shipLoop, "Replication-Shipper-Thread");
+        this.shipperThread.setDaemon(true);
+    }
+
+    public void start() {
+        shipperThread.start();
+        log.info("REPLICATION: Shipping changes to replica {}", replica);
+    }
+
+    @Override
+    public void committed(List<MessageStore.PersistedMessage> saves, List<ConfirmRequest> deletes) {
+        if (needsSnapshot) return; // the coming snapshot covers these
+        for (MessageStore.PersistedMessage msg : saves) {
+            enqueue(new ReplicatedChange(msg.idx(), msg.messageTag(), msg.messageValue()));
+        }
+        for (ConfirmRequest delete : deletes) {
+            enqueue(new ReplicatedChange(delete.idx(), delete.tag(), null));
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        shipperThread.interrupt();
+        try {
+            shipperThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("REPLICATION: Shipper stopped with {} change(s) unshipped", queue.size());
+    }
+
+    // Changes committed but not yet shipped
+    public int getLag() {
+        return queue.size();
+    }
+
+    public long getShippedCount() {
+        return shippedCount.get();
+    }
+
+    public long getSnapshotCount() {
+        return snapshotCount.get();
+    }
+
+    private void enqueue(ReplicatedChange change) {
+        if (!queue.offer(change)) {
+            log.warn("REPLICATION: Replica {} is {} changes behind; falling back to a snapshot", replica, queue.size());
+            needsSnapshot = true;
+        }
+    }
+
+    private void shipLoop() {
+        List<ReplicatedChange> batch = new ArrayList<>(BATCH_SIZE);
+        long backoff = 1000;
+        while (running) {
+            try {
+                if (sink == null) {
+                    sink = (ReplicationSink) LocateRegistry.getRegistry(replica.host(), replica.port()).lookup("ReplicationSink");
+                    log.info("REPLICATION: Connected to replica {}", replica);
+                }
+                if (needsSnapshot) {
+                    shipSnapshot();
+                }
+                ReplicatedChange first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                sink.apply(batch);
+                shippedCount.addAndGet(batch.size());
+                backoff = 1000;
+            } catch (RemoteException | NotBoundException e) {
+                if (sink != null || backoff == 1000) {
+                    log.warn("REPLICATION: Replica {} unreachable, it gets a snapshot once it is back. {}", replica, e.getMessage());
+                }
+                sink = null;
+                needsSnapshot = true;
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("REPLICATION: Shipping to {} failed, resyncing", replica, e);
+                needsSnapshot = true;
+                sleep(backoff);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Sends every stored message. The queue is emptied first: anything committed before that is in the store,
+    // anything after is queued again and applied once the snapshot is complete.
+    private void shipSnapshot() throws RemoteException {
+        needsSnapshot = false;
+        queue.clear();
+        long start = System.currentTimeMillis();
+        sink.beginSnapshot();
+
+        List<ReplicatedChange> chunk = new ArrayList<>(BATCH_SIZE);
+        long[] counts = new long[2]; // shipped, skipped
+        RemoteException[] failure = new RemoteException[1];
+        store.streamMessages(0, 1, true, msg -> {
+            if (failure[0] != null) return;
+            if (msg.idx() == MessageStore.UNKNOWN_IDX) {
+                counts[1]++; // cannot be placed on the replica's board
+                return;
+            }
+            chunk.add(new ReplicatedChange(msg.idx(), msg.messageTag(), msg.messageValue()));
+            if (chunk.size() == BATCH_SIZE) {
+                try {
+                    sink.apply(chunk);
+                    counts[0] += chunk.size();
+                } catch (RemoteException e) {
+                    failure[0] = e;
+                }
+                chunk.clear();
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        if (!chunk.isEmpty()) {
+            sink.apply(chunk);
+            counts[0] += chunk.size();
+        }
+        sink.endSnapshot();
+        snapshotCount.incrementAndGet();
+        log.info("REPLICATION: Snapshot of {} message(s) shipped to {} in {} ms ({} without a known idx skipped)",
+                counts[0], replica, System.currentTimeMillis() - start, counts[1]);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
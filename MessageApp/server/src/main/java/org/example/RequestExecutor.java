@@ -0,0 +1,91 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounds how many requests run at once. It is a semaphore gate in front of the caller's own thread: at most
+// maxInFlight calls hold a slot, a virtual caller waits for one while fewer than maxQueued others wait (parked,
+// so it costs next to nothing), and anything beyond that is rejected right away, so overload turns into fast
+// failures instead of piling up threads. A platform thread, such as an RMI connection thread, gets a free slot
+// at once or is rejected.
+public class RequestExecutor {
+    private static final Logger log = LoggerFactory.getLogger(RequestExecutor.class);
+
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RequestExecutor(int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.permits = new Semaphore(maxInFlight);
+        log.info("Request executor: at most {} request(s) in flight and {} queued", maxInFlight, maxQueued);
+    }
+
+    // Runs the task on the calling thread; exceptions thrown by the task are rethrown as they are. A virtual
+    // caller waits in the queue for a slot. A platform caller would stay blocked for as long as it waits, so it
+    // only takes a slot that is free right now and is rejected otherwise.
+    public <T> T call(Callable<T> task) throws Exception {
+        if (Thread.currentThread().isVirtual()) {
+            enqueue();
+            try {
+                permits.acquire();
+            } finally {
+                queued.decrementAndGet();
+            }
+        } else if (!permits.tryAcquire()) {
+            throw reject("No free slot");
+        }
+        inFlight.incrementAndGet();
+        try {
+            return task.call();
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    // Takes a queue place, or throws RejectedExecutionException if the queue is full.
+    private void enqueue() {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw reject("Request queue is full");
+        }
+    }
+
+    private RejectedExecutionException reject(String reason) {
+        long total = rejected.incrementAndGet();
+        log.warn("OVERLOADED: Request rejected ({} in flight, {} queued, {} rejected so far)", inFlight.get(), queued.get(), total);
+        return new RejectedExecutionException(reason);
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    // Calls holding a slot or waiting for one; unlike the queue depth this moves for RMI callers as well
+    public int getPending() {
+        return inFlight.get() + queued.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,535 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Log-structured storage engine. Messages are appended to memory-mapped segment files and deletes are
+// written as tombstones, so every write is a sequential append followed by one force() per group.
+// Sealed segments whose records are mostly dead are rewritten in place, in the background.
+//
+// Record layout: type (1) | body length (4) | CRC32C of type and body (4) | body
+//   PUT body:       cell_index (4) | board_capacity (4) | tag length (2) | tag | value length (4) | value | idx (8)
+//   TOMBSTONE body: segment id of the deleted PUT (4) | tag length (2) | tag
+// The trailing idx is absent from PUTs written before it was persisted.
+// A relocation is written as a tombstone for the old PUT followed by a new PUT.
+// A zero type byte marks the end of the written part of a segment.
+public class SegmentLogStore implements MessageStore {
+    private static final Logger log = LoggerFactory.getLogger(SegmentLogStore.class);
+
+    private static final byte TYPE_END = 0;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final int HEADER_SIZE = 9;
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    // A sealed segment is compacted once fewer than this fraction of its records are still live
+    private static final double COMPACTION_LIVE_RATIO = 0.5;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    // The write lock guards appends, the segment table and index mutations. Record reads take the read lock,
+    // so they only exclude the swap at the end of a compaction, and close. Reads of the index are lock-free.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock writeLock = lock.writeLock();
+    private final Lock readLock = lock.readLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private Segment activeSegment;
+    private ScheduledExecutorService compactor;
+
+    // A record of a sealed segment that its compacted copy keeps, at its old and new offset. tag is null for tombstones.
+    private record KeptRecord(int offset, int newOffset, int length, String tag) {}
+
+    private record Location(int segmentId, int offset) {
+        long toLocator() {
+            return ((long) segmentId << 32) | offset;
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        int totalRecords;
+        int liveRecords;
+
+        Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    public SegmentLogStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentLogStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public void initialize() {
+        writeLock.lock();
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            List<Path> unfinished;
+            try (Stream<Path> listing = Files.list(directory)) {
+                List<Path> all = listing.toList();
+                files = all.stream().filter(p -> p.getFileName().toString().matches("segment-\\d+\\.log")).sorted().toList();
+                unfinished = all.stream().filter(p -> p.getFileName().toString().matches("segment-\\d+\\.log\\.compact")).toList();
+            }
+            // Copies a crash interrupted before they replaced their segment, which is still complete
+            for (Path file : unfinished) {
+                Files.delete(file);
+            }
+            for (Path file : files) {
+                Segment segment = openSegment(file, segmentIdOf(file));
+                segments.put(segment.id, segment);
+                replay(segment);
+            }
+            activeSegment = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+            clearTail(activeSegment);
+            log.info("Segment log recovered: {} segment(s), {} live message(s) in {}", segments.size(), index.size(), directory);
+        } catch (IOException e) {
+            log.error("Error initializing the segment log", e);
+            throw new RuntimeException("Failed to initialize the segment log", e);
+        } finally {
+            writeLock.unlock();
+        }
+
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Segment-Compactor-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactSealedSegments, 30, 30, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public long[] writeBatch(List<PersistedMessage> saves, List<String> deleteTags, List<Relocation> relocations) {
+        long[] locators = new long[saves.size()];
+        Arrays.fill(locators, NO_LOCATOR);
+        if (saves.isEmpty() && deleteTags.isEmpty() && relocations.isEmpty()) return locators;
+
+        for (PersistedMessage msg : saves) {
+            if (putBodyLength(msg) + HEADER_SIZE + 1 > segmentSize) {
+                throw new IllegalArgumentException("Message with tag '" + msg.messageTag() + "' exceeds the segment size");
+            }
+        }
+
+        Segment written;
+        writeLock.lock();
+        try {
+            for (String tag : deleteTags) {
+                Location location = index.remove(tag);
+                if (location == null) continue; // nothing stored, so nothing to shadow
+                appendTombstone(tag, location.segmentId());
+                segments.get(location.segmentId()).liveRecords--;
+            }
+            for (int i = 0; i < saves.size(); i++) {
+                PersistedMessage msg = saves.get(i);
+                if (index.containsKey(msg.messageTag())) {
+                    log.warn("Duplicate tag '{}' skipped in batch save", msg.messageTag());
+                    continue;
+                }
+                Location location = appendPut(msg);
+                index.put(msg.messageTag(), location);
+                locators[i] = location.toLocator();
+            }
+            for (Relocation relocation : relocations) {
+                Location location = index.get(relocation.messageTag());
+                if (location == null) continue; // deleted meanwhile
+                PersistedMessage old = readPut(segments.get(location.segmentId()), location.offset(), true);
+                // The tombstone goes first so replay cannot mistake it for a delete of the new copy
+                appendTombstone(relocation.messageTag(), location.segmentId());
+                segments.get(location.segmentId()).liveRecords--;
+                index.put(relocation.messageTag(), appendPut(new PersistedMessage(old.idx(), relocation.cellIndex(),
+                        relocation.boardCapacity(), relocation.messageTag(), old.messageValue())));
+            }
+            written = activeSegment;
+            // Downgrade to the read lock, so reads go on while the group is forced to disk
+            readLock.lock();
+        } catch (IOException e) {
+            log.error("Error writing batch of {} inserts, {} deletes and {} relocations", saves.size(), deleteTags.size(), relocations.size(), e);
+            throw new RuntimeException("Failed to write message batch", e);
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            written.buffer.force();
+        } finally {
+            readLock.unlock();
+        }
+        return locators;
+    }
+
+    // Compaction moves records, so the value is found through the index; the locator is only a hint.
+    @Override
+    public byte[] readValue(String messageTag, long locator) {
+        readLock.lock();
+        try {
+            Location location = index.get(messageTag);
+            if (location == null) return null;
+            return readPut(segments.get(location.segmentId()), location.offset(), true).messageValue();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Partitions by tag hash. Used by recovery and by replication snapshots, so it can run next to writes and
+    // compaction: each record is read under the read lock, at wherever the index points at that moment.
+    @Override
+    public void streamMessages(int partition, int partitionCount, boolean withValues, Consumer<PersistedMessage> consumer) {
+        for (String tag : index.keySet()) {
+            if (Math.floorMod(tag.hashCode(), partitionCount) != partition) continue;
+            PersistedMessage msg;
+            readLock.lock();
+            try {
+                Location location = index.get(tag);
+                if (location == null) continue; // deleted meanwhile
+                msg = readPut(segments.get(location.segmentId()), location.offset(), withValues);
+            } finally {
+                readLock.unlock();
+            }
+            consumer.accept(msg);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            segments.clear();
+            index.clear();
+            log.info("Segment log closed.");
+        } catch (IOException e) {
+            log.error("Error closing the segment log", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Rewrites every sealed segment that is mostly dead into a copy holding only what is still needed, and
+    // deletes a segment that has nothing left. Package-private so tests can run a pass without waiting for the
+    // schedule; synchronized so such a pass and a scheduled one do not work on the same copy.
+    synchronized void compactSealedSegments() {
+        List<Segment> candidates = new ArrayList<>();
+        Set<Integer> segmentIds;
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != activeSegment && segment.liveRecords < segment.totalRecords * COMPACTION_LIVE_RATIO) {
+                    candidates.add(segment);
+                }
+            }
+            segmentIds = new HashSet<>(segments.keySet());
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (Segment segment : candidates) {
+            try {
+                compact(segment, segmentIds);
+            } catch (IOException | RuntimeException e) {
+                log.error("Compaction of segment {} failed", segment.id, e);
+            }
+        }
+    }
+
+    // A sealed segment is never written again, so its records are copied without a lock and appends go on
+    // meanwhile. Only the swap takes the write lock: the copy replaces the segment under the same id, which keeps
+    // the order replay depends on, and index entries still pointing at a copied record are moved to the copy.
+    // A record deleted during the copy is copied anyway, and the tombstone written for it still shadows it.
+    private void compact(Segment segment, Set<Integer> segmentIds) throws IOException {
+        List<KeptRecord> kept = new ArrayList<>();
+        int size = 0;
+        int position = 0;
+        while (position + HEADER_SIZE <= segment.writePosition) {
+            byte type = segment.buffer.get(position);
+            int length = HEADER_SIZE + segment.buffer.getInt(position + 1);
+            if (type == TYPE_PUT) {
+                String tag = readTag(segment, position + HEADER_SIZE + 8);
+                if (new Location(segment.id, position).equals(index.get(tag))) {
+                    kept.add(new KeptRecord(position, size, length, tag));
+                    size += length;
+                }
+            } else if (type == TYPE_TOMBSTONE) {
+                // A tombstone must survive as long as the segment holding the record it deletes
+                int targetSegment = segment.buffer.getInt(position + HEADER_SIZE);
+                if (targetSegment != segment.id && segmentIds.contains(targetSegment)) {
+                    kept.add(new KeptRecord(position, size, length, null));
+                    size += length;
+                }
+            }
+            position += length;
+        }
+        if (size == segment.writePosition) return; // nothing to reclaim
+
+        Path copyPath = segment.path.resolveSibling(segment.path.getFileName() + ".compact");
+        if (size > 0) {
+            try (FileChannel channel = FileChannel.open(copyPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer copy = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                // Records are copied byte for byte, so their checksums still hold
+                for (KeptRecord record : kept) {
+                    copy.put(record.newOffset(), segment.buffer, record.offset(), record.length());
+                }
+                copy.force();
+            }
+        }
+
+        int moved = 0;
+        writeLock.lock();
+        try {
+            if (segments.get(segment.id) != segment) {
+                Files.deleteIfExists(copyPath); // closed meanwhile
+                return;
+            }
+            if (size == 0) {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+                log.info("COMPACTION: segment {} removed, nothing in it was live", segment.id);
+                return;
+            }
+            Files.move(copyPath, segment.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Segment compacted = openSegment(segment.path, segment.id);
+            compacted.writePosition = size;
+            compacted.totalRecords = kept.size();
+            for (KeptRecord record : kept) {
+                if (record.tag() != null && index.replace(record.tag(), new Location(segment.id, record.offset()), new Location(segment.id, record.newOffset()))) {
+                    compacted.liveRecords++;
+                    moved++;
+                }
+            }
+            segments.put(segment.id, compacted);
+            segment.channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("COMPACTION: segment {} rewritten from {} to {} bytes, {} live record(s) kept", segment.id, segment.writePosition, size, moved);
+    }
+
+    // Rebuilds the index from one segment. Stops at the first torn or unwritten record.
+    private void replay(Segment segment) {
+        int position = 0;
+        int end = segment.buffer.capacity();
+        while (position + HEADER_SIZE <= end) {
+            byte type = segment.buffer.get(position);
+            if (type == TYPE_END) break;
+            int bodyLength = segment.buffer.getInt(position + 1);
+            if ((type != TYPE_PUT && type != TYPE_TOMBSTONE) || bodyLength < 0 || position + HEADER_SIZE + bodyLength > end || !checksumMatches(segment, position, type, bodyLength)) {
+                log.warn("Torn record at offset {} in segment {}; ignoring the rest of the segment", position, segment.id);
+                break;
+            }
+
+            int bodyStart = position + HEADER_SIZE;
+            if (type == TYPE_PUT) {
+                String tag = readTag(segment, bodyStart + 8);
+                Location previous = index.put(tag, new Location(segment.id, position));
+                if (previous != null) {
+                    // The same message copied forward by an interrupted compaction
+                    segments.get(previous.segmentId()).liveRecords--;
+                }
+                segment.totalRecords++;
+                segment.liveRecords++;
+            } else {
+                int targetSegment = segment.buffer.getInt(bodyStart);
+                String tag = readTag(segment, bodyStart + 4);
+                Location location = index.get(tag);
+                if (location != null && location.segmentId() == targetSegment) {
+                    index.remove(tag);
+                    segments.get(targetSegment).liveRecords--;
+                }
+                segment.totalRecords++;
+            }
+            position = bodyStart + bodyLength;
+        }
+        segment.writePosition = position;
+    }
+
+    // Zeroes whatever lies past the replayed part of the segment that takes the next appends. Records there were
+    // cut off by a crash (or persisted ahead of a torn one), and an append that happens to end exactly where one
+    // of them starts would otherwise bring it back at the next replay.
+    private void clearTail(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int end = buffer.capacity();
+        int cleared = 0;
+        int position = segment.writePosition;
+        // Eight bytes at a time; the tail of a fresh segment is all zeroes and only read
+        for (; position + Long.BYTES <= end; position += Long.BYTES) {
+            if (buffer.getLong(position) != 0) {
+                buffer.putLong(position, 0);
+                cleared += Long.BYTES;
+            }
+        }
+        for (; position < end; position++) {
+            if (buffer.get(position) != 0) {
+                buffer.put(position, (byte) 0);
+                cleared++;
+            }
+        }
+        if (cleared > 0) {
+            buffer.force();
+            log.warn("Cleared {} byte(s) of unreplayed data after offset {} in segment {}", cleared, segment.writePosition, segment.id);
+        }
+    }
+
+    private Location appendPut(PersistedMessage msg) throws IOException {
+        byte[] tag = msg.messageTag().getBytes(StandardCharsets.UTF_8);
+        byte[] value = msg.messageValue();
+        int bodyLength = putBodyLength(msg);
+        Segment segment = segmentWithRoom(bodyLength);
+
+        int position = segment.writePosition;
+        MappedByteBuffer buffer = segment.buffer;
+        int bodyStart = position + HEADER_SIZE;
+        buffer.putInt(bodyStart, msg.cellIndex());
+        buffer.putInt(bodyStart + 4, msg.boardCapacity());
+        buffer.putShort(bodyStart + 8, (short) tag.length);
+        buffer.put(bodyStart + 10, tag);
+        buffer.putInt(bodyStart + 10 + tag.length, value.length);
+        buffer.put(bodyStart + 14 + tag.length, value);
+        buffer.putLong(bodyStart + 14 + tag.length + value.length, msg.idx());
+        writeHeader(segment, position, TYPE_PUT, bodyLength);
+
+        segment.totalRecords++;
+        segment.liveRecords++;
+        return new Location(segment.id, position);
+    }
+
+    private static int putBodyLength(PersistedMessage msg) {
+        return 4 + 4 + 2 + msg.messageTag().getBytes(StandardCharsets.UTF_8).length + 4 + msg.messageValue().length + 8;
+    }
+
+    private void appendTombstone(String messageTag, int targetSegment) throws IOException {
+        byte[] tag = messageTag.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 4 + 2 + tag.length;
+        Segment segment = segmentWithRoom(bodyLength);
+
+        int position = segment.writePosition;
+        int bodyStart = position + HEADER_SIZE;
+        segment.buffer.putInt(bodyStart, targetSegment);
+        segment.buffer.putShort(bodyStart + 4, (short) tag.length);
+        segment.buffer.put(bodyStart + 6, tag);
+        writeHeader(segment, position, TYPE_TOMBSTONE, bodyLength);
+        segment.totalRecords++;
+    }
+
+    // The type byte is written last, so a record only becomes visible to replay once it is complete.
+    private void writeHeader(Segment segment, int position, byte type, int bodyLength) {
+        segment.buffer.putInt(position + 1, bodyLength);
+        segment.buffer.putInt(position + 5, checksum(segment, position + HEADER_SIZE, type, bodyLength));
+        segment.buffer.put(position, type);
+        segment.writePosition = position + HEADER_SIZE + bodyLength;
+    }
+
+    // Returns the active segment, rolling over to a fresh one if the record does not fit.
+    private Segment segmentWithRoom(int bodyLength) throws IOException {
+        int recordLength = HEADER_SIZE + bodyLength;
+        if (recordLength + 1 > segmentSize) {
+            throw new IOException("Record of " + recordLength + " bytes exceeds the segment size");
+        }
+        if (activeSegment.writePosition + recordLength + 1 > activeSegment.buffer.capacity()) {
+            activeSegment.buffer.force();
+            activeSegment = createSegment(activeSegment.id + 1);
+        }
+        return activeSegment;
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("segment-%06d.log", id));
+        Segment segment = openSegment(path, id);
+        segments.put(id, segment);
+        log.info("Segment log rolled over to {}", path.getFileName());
+        return segment;
+    }
+
+    // A new file is mapped at the segment size. An existing one keeps its own size, which is smaller once compacted.
+    private Segment openSegment(Path path, int id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size == 0 ? segmentSize : size);
+        return new Segment(id, path, channel, buffer);
+    }
+
+    private PersistedMessage readPut(Segment segment, int position, boolean withValue) {
+        int bodyStart = position + HEADER_SIZE;
+        int cellIndex = segment.buffer.getInt(bodyStart);
+        int boardCapacity = segment.buffer.getInt(bodyStart + 4);
+        String tag = readTag(segment, bodyStart + 8);
+        int valueStart = bodyStart + 10 + segment.buffer.getShort(bodyStart + 8);
+        int valueLength = segment.buffer.getInt(valueStart);
+        byte[] value = null;
+        if (withValue) {
+            value = new byte[valueLength];
+            segment.buffer.get(valueStart + 4, value);
+        }
+        int idxStart = valueStart + 4 + valueLength;
+        boolean hasIdx = idxStart + 8 <= bodyStart + segment.buffer.getInt(position + 1);
+        long idx = hasIdx ? segment.buffer.getLong(idxStart) : UNKNOWN_IDX;
+        return new PersistedMessage(idx, cellIndex, boardCapacity, tag, value, new Location(segment.id, position).toLocator());
+    }
+
+    // Reads a length-prefixed tag starting at the given offset.
+    private String readTag(Segment segment, int offset) {
+        byte[] tag = new byte[segment.buffer.getShort(offset)];
+        segment.buffer.get(offset + 2, tag);
+        return new String(tag, StandardCharsets.UTF_8);
+    }
+
+    private boolean checksumMatches(Segment segment, int position, byte type, int bodyLength) {
+        return segment.buffer.getInt(position + 5) == checksum(segment, position + HEADER_SIZE, type, bodyLength);
+    }
+
+    private int checksum(Segment segment, int bodyStart, byte type, int bodyLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(segment.buffer.slice(bodyStart, bodyLength));
+        return (int) crc.getValue();
+    }
+
+    private static int segmentIdOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+}
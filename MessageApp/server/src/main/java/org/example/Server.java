@@ -3,49 +3,100 @@ package org.example;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
 
 public class Server {
     static void main(String[] args) throws Exception {
         Logger log = LoggerFactory.getLogger(Server.class);
 
-        // Determine port, then set up database with a port-specific name
+        // Determine port, then set up storage with a port-specific name
         int port = args.length > 0 ? Integer.parseInt(args[0]) : 1099;
-        String dbPath = "server_" + port + ".db";
 
-        ServerDatabaseManager dbManager = new ServerDatabaseManager(dbPath);
-        dbManager.initializeDatabase();
+        MessageStore store = openStore(port);
+        store.initialize();
+        log.info("Using {} storage engine", System.getProperty("bulletin.storage", "sqlite"));
 
-        BulletinBoardImpl bulletinBoard = new BulletinBoardImpl(dbManager);
-        BulletinBoard stub = (BulletinBoard) UnicastRemoteObject.exportObject(bulletinBoard, 0);
+        CheckoutLeaseStore leaseStore = new CheckoutLeaseStore("server_" + port + "_leases.db");
+        leaseStore.initialize();
+
+        // Blocking request work runs on the caller's thread behind these admission limits
+        RequestExecutor requestExecutor = new RequestExecutor(
+                Integer.getInteger("bulletin.maxInFlight", 256), Integer.getInteger("bulletin.maxQueued", 4096));
+
+        // Proof-of-work difficulty follows the add rate and the requests in flight or waiting for a slot
+        DifficultyController difficulty = new DifficultyController(requestExecutor::getPending);
+        difficulty.start();
+
+        // A replica follows its primary's shard, so it holds whatever the primary sends it
+        String replicaOf = System.getProperty("bulletin.replicaOf");
+        ShardMap.Shard primary = replicaOf != null ? ShardMap.Shard.parse(replicaOf) : null;
+        BulletinBoardImpl bulletinBoard = new BulletinBoardImpl(store, leaseStore,
+                primary != null ? idx -> true : shardOwnership(port, log), difficulty);
+
+        ReplicaBoard replicaBoard = primary != null ? new ReplicaBoard(bulletinBoard, primary) : null;
+        BulletinBoard clientBoard = replicaBoard != null ? replicaBoard : bulletinBoard;
+
+        AdmissionControlledBoard exportedBoard = new AdmissionControlledBoard(clientBoard, requestExecutor);
+        BulletinBoard stub = (BulletinBoard) UnicastRemoteObject.exportObject(exportedBoard, 0);
 
         Registry registry = LocateRegistry.createRegistry(port);
         registry.rebind("BulletinBoard", stub);
 
-        log.info("Server running on port: {}", port);
+        ReplicaSink replicaSink = null;
+        if (primary != null) {
+            replicaSink = new ReplicaSink(bulletinBoard);
+            registry.rebind("ReplicationSink", (ReplicationSink) UnicastRemoteObject.exportObject(replicaSink, 0));
+            log.info("Running as replica of {}", primary);
+        }
 
-        // --- Orphaned Message Cleanup Task ---
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "Orphaned-Message-Cleaner-Thread");
-            t.setDaemon(true);
-            return t;
-        });
-        scheduler.scheduleAtFixedRate(bulletinBoard::cleanUpOrphanedMessages, 1, 1, TimeUnit.MINUTES);
-        log.info("Orphaned message cleanup task scheduled to run every minute.");
+        // A primary ships every committed change to its replica
+        ReplicationShipper shipper = null;
+        String replica = System.getProperty("bulletin.replica");
+        if (replica != null) {
+            shipper = new ReplicationShipper(ShardMap.Shard.parse(replica), store);
+            bulletinBoard.setCommitListener(shipper);
+            shipper.start();
+        }
 
+        log.info("Server running on port: {}", port);
+
+        // Binary framed protocol on a second port, for clients that skip RMI; off unless -Dbulletin.nio.enabled=true
+        FramedServer framedServer = null;
+        if (Boolean.getBoolean("bulletin.nio.enabled")) {
+            framedServer = new FramedServer(exportedBoard, Integer.getInteger("bulletin.nio.port", port + 1000));
+            framedServer.start();
+        }
 
         CountDownLatch latch = new CountDownLatch(1);
+        ReplicaSink exportedSink = replicaSink;
+        ReplicationShipper replicationShipper = shipper;
+        FramedServer framed = framedServer;
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
-                scheduler.shutdown();
-                UnicastRemoteObject.unexportObject(bulletinBoard, true);
+                if (framed != null) {
+                    framed.shutdown();
+                }
+                UnicastRemoteObject.unexportObject(exportedBoard, true);
+                if (exportedSink != null) {
+                    UnicastRemoteObject.unexportObject(exportedSink, true);
+                }
+                difficulty.shutdown();
+                if (replicaBoard != null) {
+                    replicaBoard.shutdown();
+                }
+                bulletinBoard.shutdown();
+                // After the board's final flush, so the unshipped count it logs is complete
+                if (replicationShipper != null) {
+                    replicationShipper.shutdown();
+                }
+                leaseStore.close();
+                store.close();
                 log.info("Server shut down gracefully.");
             } catch (Exception e) {
                 log.error(e.getMessage());
@@ -56,4 +107,29 @@ public class Server {
         log.info("Server running. Press CTRL+C to stop.");
         latch.await();
     }
+
+    // Storage engine: "sqlite" (default) or "segment" for the append-only segment log
+    static MessageStore openStore(int port) {
+        String engine = System.getProperty("bulletin.storage", "sqlite");
+        return switch (engine) {
+            case "sqlite" -> new ServerDatabaseManager("server_" + port + ".db");
+            case "segment" -> new SegmentLogStore(Path.of("server_" + port + "_segments"));
+            default -> throw new IllegalArgumentException("Unknown storage engine: " + engine);
+        };
+    }
+
+    // With an explicit -Dbulletin.shards this server only takes adds for the indices the ring assigns to it,
+    // since clients look for those messages nowhere else. Without one it owns every index.
+    private static LongPredicate shardOwnership(int port, Logger log) {
+        if (System.getProperty("bulletin.shards") == null) {
+            return idx -> true;
+        }
+        ShardMap shardMap = ShardMap.fromConfig();
+        ShardMap.Shard self = ShardMap.Shard.parse(System.getProperty("bulletin.shard.self", "localhost:" + port));
+        if (!shardMap.contains(self)) {
+            throw new IllegalArgumentException("This server (" + self + ") is not in the shard map " + shardMap.shards());
+        }
+        log.info("Serving shard {} of {}", self, shardMap.shards());
+        return idx -> shardMap.shardFor(idx).equals(self);
+    }
 }
\ No newline at end of file
@@ -2,66 +2,233 @@ package org.example;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteErrorCode;
 
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-public class ServerDatabaseManager {
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// SQLite storage engine for the bulletin board. All writes go through one long-lived connection whose
+// prepared statements are cached; recovery readers open their own short-lived connections.
+public class ServerDatabaseManager implements MessageStore {
     private static final Logger log = LoggerFactory.getLogger(ServerDatabaseManager.class);
+
+    private static final String INSERT_SQL = "INSERT INTO bulletin_board(cell_index, board_capacity, message_tag, message_value, message_idx) VALUES(?,?,?,?,?)";
+    private static final String DELETE_SQL = "DELETE FROM bulletin_board WHERE message_tag = ?";
+    private static final String RELOCATE_SQL = "UPDATE bulletin_board SET cell_index = ?, board_capacity = ? WHERE message_tag = ?";
+    private static final String LAST_ROWID_SQL = "SELECT last_insert_rowid()";
+    // The tag check guards against a rowid that was reused after its message was deleted
+    private static final String READ_VALUE_SQL = "SELECT message_value FROM bulletin_board WHERE rowid = ? AND message_tag = ?";
+    private static final String READ_VALUE_BY_TAG_SQL = "SELECT message_value FROM bulletin_board WHERE message_tag = ?";
+
     private final String dbUrl;
 
+    // SQLite allows a single writer at a time, so one connection guarded by a lock is all we need
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+    private Connection writeConnection;
+
+    // Lazy value reads use their own connection so they never wait behind a group commit (WAL allows this)
+    private final ReentrantLock readLock = new ReentrantLock();
+    private Connection readConnection;
+    private PreparedStatement readValueStmt;
+    private PreparedStatement readValueByTagStmt;
+
     public ServerDatabaseManager(String dbPath) {
         this.dbUrl = "jdbc:sqlite:" + dbPath;
     }
 
-    public void initializeDatabase() {
+    @Override
+    public void initialize() {
         String sql = """
                 CREATE TABLE IF NOT EXISTS bulletin_board (
                     cell_index INTEGER NOT NULL,
                     board_capacity INTEGER NOT NULL,
                     message_tag TEXT PRIMARY KEY,
-                    message_value BLOB NOT NULL
+                    message_value BLOB NOT NULL,
+                    message_idx INTEGER
                 );
                 """;
 
-        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        writeLock.lock();
+        try {
+            writeConnection = connect();
+            try (Statement stmt = writeConnection.createStatement()) {
+                // WAL lets the startup readers run next to the writer and turns each commit into a sequential append
+                stmt.execute("PRAGMA journal_mode = WAL;");
+                stmt.execute(sql);
+                addIdxColumnIfMissing(stmt);
+            }
             log.info("Database initialized successfully. Table 'bulletin_board' is ready.");
         } catch (SQLException e) {
             log.error("Error initializing the database", e);
             throw new RuntimeException("Failed to initialize the database", e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    public void saveMessage(int cellIndex, int boardCapacity, String messageTag, byte[] messageValue) {
-        String sql = "INSERT INTO bulletin_board(cell_index, board_capacity, message_tag, message_value) VALUES(?,?,?,?)";
+    // Databases created before the board index was persisted get the column added; their rows keep a NULL index.
+    private void addIdxColumnIfMissing(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(bulletin_board)")) {
+            while (rs.next()) {
+                if ("message_idx".equals(rs.getString("name"))) return;
+            }
+        }
+        stmt.execute("ALTER TABLE bulletin_board ADD COLUMN message_idx INTEGER");
+        log.info("Added column 'message_idx' to table 'bulletin_board'.");
+    }
 
-        try (Connection conn = connect(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, cellIndex);
-            stmt.setInt(2, boardCapacity);
-            stmt.setString(3, messageTag);
-            stmt.setBytes(4, messageValue);
-            stmt.executeUpdate();
+    // Applies a group of deletes, inserts and relocations in a single transaction, so the whole group costs one
+    // fsync. A row that violates the tag uniqueness only fails its own statement;
+    // the returned array holds the rowid of each stored insert.
+    @Override
+    public long[] writeBatch(List<PersistedMessage> saves, List<String> deleteTags, List<Relocation> relocations) {
+        long[] locators = new long[saves.size()];
+        Arrays.fill(locators, NO_LOCATOR);
+        if (saves.isEmpty() && deleteTags.isEmpty() && relocations.isEmpty()) return locators;
+
+        writeLock.lock();
+        try {
+            writeConnection.setAutoCommit(false);
+            try {
+                if (!deleteTags.isEmpty()) {
+                    PreparedStatement delete = prepared(DELETE_SQL);
+                    for (String tag : deleteTags) {
+                        delete.setString(1, tag);
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+
+                PreparedStatement insert = prepared(INSERT_SQL);
+                PreparedStatement lastRowId = prepared(LAST_ROWID_SQL);
+                for (int i = 0; i < saves.size(); i++) {
+                    PersistedMessage msg = saves.get(i);
+                    insert.setInt(1, msg.cellIndex());
+                    insert.setInt(2, msg.boardCapacity());
+                    insert.setString(3, msg.messageTag());
+                    insert.setBytes(4, msg.messageValue());
+                    if (msg.idx() == UNKNOWN_IDX) {
+                        insert.setNull(5, Types.INTEGER);
+                    } else {
+                        insert.setLong(5, msg.idx());
+                    }
+                    try {
+                        insert.executeUpdate();
+                        try (ResultSet rs = lastRowId.executeQuery()) {
+                            rs.next();
+                            locators[i] = rs.getLong(1);
+                        }
+                    } catch (SQLException e) {
+                        if (e.getErrorCode() != SQLiteErrorCode.SQLITE_CONSTRAINT.code) throw e;
+                        log.warn("Duplicate tag '{}' skipped in batch save", msg.messageTag());
+                    }
+                }
+
+                if (!relocations.isEmpty()) {
+                    PreparedStatement relocate = prepared(RELOCATE_SQL);
+                    for (Relocation relocation : relocations) {
+                        relocate.setInt(1, relocation.cellIndex());
+                        relocate.setInt(2, relocation.boardCapacity());
+                        relocate.setString(3, relocation.messageTag());
+                        relocate.addBatch();
+                    }
+                    relocate.executeBatch();
+                }
+                writeConnection.commit();
+            } catch (SQLException e) {
+                writeConnection.rollback();
+                throw e;
+            } finally {
+                writeConnection.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            log.error("Error saving message with tag '{}'", messageTag, e);
-            // Re-throw as a runtime exception to notify the caller of the failure
-            throw new RuntimeException("Failed to save message", e);
+            log.error("Error writing batch of {} inserts, {} deletes and {} relocations", saves.size(), deleteTags.size(), relocations.size(), e);
+            throw new RuntimeException("Failed to write message batch", e);
+        } finally {
+            writeLock.unlock();
         }
+        return locators;
     }
 
-    public void deleteMessage(String messageTag) {
-        String sql = "DELETE FROM bulletin_board WHERE message_tag = ?";
+    @Override
+    public byte[] readValue(String messageTag, long locator) {
+        readLock.lock();
+        try {
+            if (readConnection == null) {
+                readConnection = connect();
+                readValueStmt = readConnection.prepareStatement(READ_VALUE_SQL);
+                readValueByTagStmt = readConnection.prepareStatement(READ_VALUE_BY_TAG_SQL);
+            }
+            PreparedStatement stmt;
+            if (locator == NO_LOCATOR) {
+                stmt = readValueByTagStmt;
+                stmt.setString(1, messageTag);
+            } else {
+                stmt = readValueStmt;
+                stmt.setLong(1, locator);
+                stmt.setString(2, messageTag);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        } catch (SQLException e) {
+            log.error("Error reading value of message with tag '{}'", messageTag, e);
+            throw new RuntimeException("Failed to read message value", e);
+        } finally {
+            readLock.unlock();
+        }
+    }
 
-        try (Connection conn = connect(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, messageTag);
-            stmt.executeUpdate();
+    // Closes the cached statements and the writer connection.
+    @Override
+    public void close() {
+        readLock.lock();
+        try {
+            if (readConnection != null) {
+                readConnection.close();
+                readConnection = null;
+            }
         } catch (SQLException e) {
-            log.error("Error deleting message with tag '{}'", messageTag, e);
-            // Re-throw as a runtime exception to notify the caller of the failure
-            throw new RuntimeException("Failed to delete message", e);
+            log.error("Error closing the read connection", e);
+        } finally {
+            readLock.unlock();
+        }
+
+        writeLock.lock();
+        try {
+            for (PreparedStatement stmt : statementCache.values()) {
+                stmt.close();
+            }
+            statementCache.clear();
+            if (writeConnection != null) {
+                writeConnection.close();
+                writeConnection = null;
+            }
+            log.info("Database connection closed.");
+        } catch (SQLException e) {
+            log.error("Error closing the database connection", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Returns the cached statement for the given SQL, preparing it on first use. Caller must hold the write lock.
+    private PreparedStatement prepared(String sql) throws SQLException {
+        if (writeConnection == null) {
+            throw new SQLException("Database not initialized");
+        }
+        PreparedStatement stmt = statementCache.get(sql);
+        if (stmt == null) {
+            stmt = writeConnection.prepareStatement(sql);
+            statementCache.put(sql, stmt);
         }
+        return stmt;
     }
 
     private Connection connect() throws SQLException {
@@ -72,47 +239,49 @@ public class ServerDatabaseManager {
         }
         return conn;
     }
-    public record PersistedMessage(int cellIndex, int boardCapacity, String messageTag, byte[] messageValue) {}
-    public List<Integer> getAllBoardCapacities() {
-        String sql = "SELECT DISTINCT board_capacity FROM bulletin_board";
-        List<Integer> capacities = new ArrayList<>();
-
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    // Each partition is a contiguous rowid range, so parallel readers walk disjoint parts of the table's B-tree.
+    @Override
+    public void streamMessages(int partition, int partitionCount, boolean withValues, Consumer<PersistedMessage> consumer) {
+        String rangeSql = "SELECT MIN(rowid), MAX(rowid) FROM bulletin_board";
+        String sql = "SELECT rowid, message_idx, cell_index, board_capacity, message_tag" + (withValues ? ", message_value" : "")
+                + " FROM bulletin_board WHERE rowid BETWEEN ? AND ?";
 
-            while (rs.next()) {
-                capacities.add(rs.getInt("board_capacity"));
+        try (Connection conn = connect()) {
+            long minRowId;
+            long maxRowId;
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(rangeSql)) {
+                rs.next();
+                minRowId = rs.getLong(1);
+                if (rs.wasNull()) return; // empty table
+                maxRowId = rs.getLong(2);
             }
-        } catch (SQLException e) {
-            log.error("Error retrieving board capacities", e);
-            throw new RuntimeException("Failed to retrieve capacities", e);
-        }
-        return capacities;
-    }
-    public List<PersistedMessage> loadAllMessagesWithCapacity() {
-        String sql = "SELECT cell_index, board_capacity, message_tag, message_value FROM bulletin_board";
-        List<PersistedMessage> messages = new ArrayList<>();
 
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+            long rangeSize = (maxRowId - minRowId) / partitionCount + 1;
+            long from = minRowId + partition * rangeSize;
+            long to = Math.min(maxRowId, from + rangeSize - 1);
+            if (from > maxRowId) return;
 
-            while (rs.next()) {
-                messages.add(new PersistedMessage(
-                        rs.getInt("cell_index"),
-                        rs.getInt("board_capacity"),
-                        rs.getString("message_tag"),
-                        rs.getBytes("message_value")
-                ));
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, from);
+                stmt.setLong(2, to);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        long idx = rs.getLong("message_idx");
+                        consumer.accept(new PersistedMessage(
+                                rs.wasNull() ? UNKNOWN_IDX : idx,
+                                rs.getInt("cell_index"),
+                                rs.getInt("board_capacity"),
+                                rs.getString("message_tag"),
+                                withValues ? rs.getBytes("message_value") : null,
+                                rs.getLong("rowid")
+                        ));
+                    }
+                }
             }
-            log.info("Loaded {} raw messages from the database.", messages.size());
         } catch (SQLException e) {
-            log.error("Error loading messages from the database", e);
+            log.error("Error streaming messages from the database", e);
             throw new RuntimeException("Failed to load messages from the database", e);
         }
-        return messages;
     }
 }
 
-
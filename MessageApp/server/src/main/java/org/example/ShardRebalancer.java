@@ -0,0 +1,94 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Offline tool that moves persisted messages to the shard the ring now assigns them to, after servers were
+// added to or removed from -Dbulletin.shards. Run it with all servers stopped, in the directory holding their
+// stores, passing the ports of any removed servers as arguments (the shards in the map are always scanned).
+// Each message is copied to its new store before it is deleted from the old one, so an interrupted run leaves
+// duplicates at worst, which a rerun cleans up. Messages without a persisted idx cannot be routed and stay put.
+public class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+    private static final int BATCH_SIZE = 1000;
+
+    static void main(String[] args) {
+        if (System.getProperty("bulletin.shards") == null) {
+            throw new IllegalArgumentException("Set -Dbulletin.shards to the new shard map");
+        }
+        ShardMap shardMap = ShardMap.fromConfig();
+
+        TreeSet<Integer> ports = new TreeSet<>();
+        shardMap.shards().forEach(shard -> ports.add(shard.port()));
+        for (String arg : args) {
+            ports.add(Integer.parseInt(arg));
+        }
+
+        Map<Integer, MessageStore> stores = new HashMap<>();
+        try {
+            for (int port : ports) {
+                MessageStore store = Server.openStore(port);
+                store.initialize();
+                stores.put(port, store);
+            }
+            long start = System.currentTimeMillis();
+            long moved = 0;
+            for (int port : ports) {
+                moved += rebalance(port, stores, shardMap);
+            }
+            log.info("REBALANCE: {} message(s) moved across {} store(s) in {} ms", moved, ports.size(), System.currentTimeMillis() - start);
+        } finally {
+            stores.values().forEach(MessageStore::close);
+        }
+    }
+
+    // Moves every message of one store that belongs to another shard. Returns how many were moved.
+    private static long rebalance(int port, Map<Integer, MessageStore> stores, ShardMap shardMap) {
+        MessageStore source = stores.get(port);
+
+        // Only locators are collected; values are read back batch by batch while moving
+        Map<Integer, List<MessageStore.PersistedMessage>> movesByTarget = new HashMap<>();
+        long[] kept = new long[2]; // staying, unroutable
+        source.streamMessages(0, 1, false, msg -> {
+            if (msg.idx() == MessageStore.UNKNOWN_IDX) {
+                kept[1]++;
+                return;
+            }
+            int target = shardMap.shardFor(msg.idx()).port();
+            if (target == port) {
+                kept[0]++;
+            } else {
+                movesByTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(msg);
+            }
+        });
+
+        long moved = 0;
+        for (Map.Entry<Integer, List<MessageStore.PersistedMessage>> entry : movesByTarget.entrySet()) {
+            MessageStore target = stores.get(entry.getKey());
+            List<MessageStore.PersistedMessage> moves = entry.getValue();
+            for (int from = 0; from < moves.size(); from += BATCH_SIZE) {
+                List<MessageStore.PersistedMessage> saves = new ArrayList<>();
+                List<String> deleteTags = new ArrayList<>();
+                for (MessageStore.PersistedMessage msg : moves.subList(from, Math.min(from + BATCH_SIZE, moves.size()))) {
+                    byte[] value = source.readValue(msg.messageTag(), msg.locator());
+                    if (value == null) continue;
+                    // Cell and capacity stay valid: the target recovers a generation of that capacity and migrates it
+                    saves.add(new MessageStore.PersistedMessage(msg.idx(), msg.cellIndex(), msg.boardCapacity(), msg.messageTag(), value));
+                    deleteTags.add(msg.messageTag());
+                }
+                target.writeBatch(saves, List.of(), List.of());
+                source.writeBatch(List.of(), deleteTags, List.of());
+                moved += deleteTags.size();
+            }
+            log.info("REBALANCE: {} message(s) moved from port {} to port {}", moves.size(), port, entry.getKey());
+        }
+        log.info("REBALANCE: Port {} keeps {} message(s), {} without a known idx", port, kept[0], kept[1]);
+        return moved;
+    }
+}
@@ -0,0 +1,10 @@
+package org.example;
+
+// What a board bucket keeps for a message: the ciphertext itself, or in lazy mode only the store locator
+// from which the ciphertext is read when the message is fetched.
+sealed interface StoredValue permits StoredValue.Inline, StoredValue.OnDisk {
+
+    record Inline(byte[] bytes) implements StoredValue {}
+
+    record OnDisk(long locator) implements StoredValue {}
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU cache of message values keyed by tag. In lazy mode it sits in front of the store so that
+// recently added messages, which are the ones most likely to be fetched next, skip the disk read.
+public class ValueCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long hits;
+    private long misses;
+
+    public ValueCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized byte[] get(String tag) {
+        byte[] value = entries.get(tag);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    public synchronized void put(String tag, byte[] value) {
+        if (value.length > maxBytes) return;
+        byte[] previous = entries.put(tag, value);
+        if (previous != null) {
+            currentBytes -= previous.length;
+        }
+        currentBytes += value.length;
+
+        // Evict least recently used entries until we are back under budget
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    public synchronized void remove(String tag) {
+        byte[] value = entries.remove(tag);
+        if (value != null) {
+            currentBytes -= value.length;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getSizeBytes() {
+        return currentBytes;
+    }
+}
@@ -0,0 +1,237 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulletinBoardImplTest {
+    // Indices that all land in cell 5 of the initial 1024-cell generation
+    private static final int CELL = 5;
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    Path dir;
+
+    private BlockingStore store;
+    private CheckoutLeaseStore leases;
+    private BulletinBoardImpl board;
+
+    @BeforeAll
+    static void lowerDifficulty() {
+        System.setProperty("bulletin.pow.minBits", "8");
+        System.setProperty("bulletin.pow.maxBits", "8");
+    }
+
+    @AfterAll
+    static void restoreDifficulty() {
+        System.clearProperty("bulletin.pow.minBits");
+        System.clearProperty("bulletin.pow.maxBits");
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new BlockingStore();
+        leases = new CheckoutLeaseStore(dir.resolve("leases.db").toString());
+        leases.initialize();
+        board = new BulletinBoardImpl(store, leases, idx -> true, new DifficultyController(() -> 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.release.countDown();
+        board.shutdown();
+        leases.close();
+    }
+
+    @Test
+    void concurrentAddsToOneCellShareACommitGroup() throws Exception {
+        int adds = 8;
+        ExecutorService callers = Executors.newFixedThreadPool(adds);
+        try {
+            // The first add holds up the writer thread, so the others queue behind its commit
+            Future<Boolean> first = callers.submit(() -> add(0));
+            assertTrue(store.entered.await(5, TimeUnit.SECONDS));
+
+            List<Future<Boolean>> rest = new ArrayList<>();
+            for (int i = 1; i < adds; i++) {
+                int n = i;
+                rest.add(callers.submit(() -> add(n)));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (store.queued() < adds - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            store.release.countDown();
+
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            for (Future<Boolean> add : rest) {
+                assertTrue(add.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(List.of(1, adds - 1), store.groupSizes);
+
+        for (int i = 0; i < adds; i++) {
+            assertNotNull(board.get(idxOf(i), "m" + i), "message " + i);
+        }
+    }
+
+    @Test
+    void repeatedAddIsOnlyAnsweredOnceItsProofVerifies() throws Exception {
+        store.release.countDown();
+        assertTrue(add(0));
+        String tag = Encryption.preimageToTag("m0");
+        long nonce = ProofOfWork.computeProof(tag, idxOf(0), 8).nonce();
+        long invalid = nonce + 1;
+        while (ProofOfWork.verifyProof(tag, idxOf(0), invalid, 8)) {
+            invalid++;
+        }
+        assertFalse(board.add(idxOf(0), "v0".getBytes(), tag, invalid));
+        assertTrue(board.add(idxOf(0), "v0".getBytes(), tag, nonce));
+        assertEquals(List.of(1), store.groupSizes);
+    }
+
+    @Test
+    void failedValueReadLeavesTheMessageOnTheBoard() throws Exception {
+        useLazyBoard();
+        assertTrue(add(0));
+        store.readFailure = new IllegalStateException("disk error");
+        assertThrows(RemoteException.class, () -> board.get(idxOf(0), "m0"));
+
+        store.readFailure = null;
+        assertNotNull(board.get(idxOf(0), "m0"));
+    }
+
+    @Test
+    void messageMissingFromStorageIsDeletedAndReported() throws Exception {
+        useLazyBoard();
+        assertTrue(add(0));
+        store.values.clear();
+        assertThrows(RemoteException.class, () -> board.get(idxOf(0), "m0"));
+        assertEquals(List.of(Encryption.preimageToTag("m0")), store.deletes);
+        assertNull(board.get(idxOf(0), "m0"));
+    }
+
+    @Test
+    void offHeapBoardFindsMessagesWithoutATagIndex() throws Exception {
+        useBoard(Map.of("bulletin.buckets", "offheap", "bulletin.migration.intervalMs", "1"));
+        // Enough to resize the first generation, so the messages spread over generations while the migration runs
+        int messages = 30;
+        for (int i = 0; i < messages; i++) {
+            assertTrue(add(i));
+        }
+        assertTrue(add(3));
+        assertEquals(messages, store.groupSizes.stream().mapToInt(Integer::intValue).sum());
+
+        for (int i = 0; i < messages; i++) {
+            assertNotNull(board.get(idxOf(i), "m" + i), "message " + i);
+            assertNull(board.get(idxOf(i), "m" + i));
+        }
+    }
+
+    // Values are kept in the store only, so every get reads them through readValue
+    private void useLazyBoard() {
+        useBoard(Map.of("bulletin.lazyValues", "true", "bulletin.valueCacheMb", "0"));
+    }
+
+    // Replaces the board with one built under the given system properties, and lets its writes through
+    private void useBoard(Map<String, String> properties) {
+        board.shutdown();
+        store.release.countDown();
+        properties.forEach(System::setProperty);
+        try {
+            board = new BulletinBoardImpl(store, leases, idx -> true, new DifficultyController(() -> 0));
+        } finally {
+            properties.keySet().forEach(System::clearProperty);
+        }
+    }
+
+    private boolean add(int n) throws Exception {
+        long idx = idxOf(n);
+        String tag = Encryption.preimageToTag("m" + n);
+        return board.add(idx, ("v" + n).getBytes(), tag, ProofOfWork.computeProof(tag, idx, 8).nonce());
+    }
+
+    private static long idxOf(int n) {
+        return (long) n * CAPACITY + CELL;
+    }
+
+    // Records the inserts of each committed group. The first group waits for the test to release it.
+    private final class BlockingStore implements MessageStore {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> groupSizes = new CopyOnWriteArrayList<>();
+        final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        final List<String> deletes = new CopyOnWriteArrayList<>();
+        volatile RuntimeException readFailure;
+        private final AtomicLong nextLocator = new AtomicLong();
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public long[] writeBatch(List<PersistedMessage> saves, List<String> deleteTags, List<Relocation> relocations) {
+            deletes.addAll(deleteTags);
+            if (saves.isEmpty()) return new long[0];
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            groupSizes.add(saves.size());
+            long[] locators = new long[saves.size()];
+            for (int i = 0; i < locators.length; i++) {
+                locators[i] = nextLocator.incrementAndGet();
+                values.put(saves.get(i).messageTag(), saves.get(i).messageValue());
+            }
+            return locators;
+        }
+
+        // Writes the writer thread has not picked up yet
+        int queued() {
+            return board.getWriteQueueDepth();
+        }
+
+        @Override
+        public void streamMessages(int partition, int partitionCount, boolean withValues, Consumer<PersistedMessage> consumer) {
+        }
+
+        @Override
+        public byte[] readValue(String messageTag, long locator) {
+            if (readFailure != null) throw readFailure;
+            return values.get(messageTag);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DifficultyControllerTest {
+    private final AtomicInteger pending = new AtomicInteger();
+    private DifficultyController controller;
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("bulletin.pow.graceMs");
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+
+    private static void awaitBits(IntSupplier bits, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 6000;
+        while (bits.getAsInt() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, bits.getAsInt());
+    }
+
+    @Test
+    void startsAboveItsFloor() {
+        controller = new DifficultyController(pending::get);
+        assertEquals(ProofOfWork.DIFFICULTY_BITS, controller.currentBits());
+        assertEquals(ProofOfWork.DIFFICULTY_BITS, controller.acceptedBits());
+        assertTrue(controller.minBits() < controller.currentBits());
+    }
+
+    @Test
+    void quietServerStepsDownToTheFloor() throws InterruptedException {
+        controller = new DifficultyController(pending::get);
+        controller.start();
+        awaitBits(controller::currentBits, ProofOfWork.DIFFICULTY_BITS - 1);
+        awaitBits(controller::currentBits, controller.minBits());
+        // Proofs for the higher difficulties are easier to accept than to solve, so nothing is refused
+        assertEquals(controller.minBits(), controller.acceptedBits());
+    }
+
+    @Test
+    void everyDifficultyOfTheGracePeriodIsAcceptedUntilItEnds() throws InterruptedException {
+        System.setProperty("bulletin.pow.graceMs", "2000");
+        pending.set(1000);
+        controller = new DifficultyController(pending::get);
+        controller.start();
+
+        // The rise to the maximum is applied at once, two bits above what clients last fetched
+        awaitBits(controller::currentBits, 24);
+        assertEquals(ProofOfWork.DIFFICULTY_BITS, controller.acceptedBits());
+        awaitBits(controller::acceptedBits, 24);
+        assertEquals(24, controller.currentBits());
+    }
+}
@@ -0,0 +1,77 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiryWheelTest {
+    private static final long TICK_MS = 10;
+
+    private final List<String> expired = new CopyOnWriteArrayList<>();
+    private final ExpiryWheel wheel = new ExpiryWheel("Test-Expiry-Thread", TICK_MS, 8, expired::add);
+
+    @AfterEach
+    void tearDown() {
+        wheel.shutdown();
+    }
+
+    private void awaitExpired(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (expired.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void keysExpireInDeadlineOrder() throws InterruptedException {
+        wheel.start();
+        wheel.schedule("c", 150);
+        wheel.schedule("a", 30);
+        wheel.schedule("b", 90);
+        awaitExpired(3);
+        assertEquals(List.of("a", "b", "c"), expired);
+        assertEquals(3, wheel.getExpiredCount());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void deadlineBeyondOneRotationWaitsForIt() throws InterruptedException {
+        wheel.start();
+        long start = System.nanoTime();
+        // Eight slots of 10 ms cover 80 ms, so this timer passes its slot once before it is due
+        wheel.schedule("late", 200);
+        awaitExpired(1);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(List.of("late"), expired);
+        assertTrue(elapsedMs >= 200, "expired after " + elapsedMs + " ms");
+    }
+
+    @Test
+    void cancelledAndRescheduledTimersDoNotFireEarly() throws InterruptedException {
+        wheel.start();
+        wheel.schedule("cancelled", 30);
+        wheel.schedule("moved", 30);
+        wheel.schedule("marker", 120);
+        wheel.cancel("cancelled");
+        wheel.schedule("moved", 200);
+        awaitExpired(2);
+        assertEquals(List.of("marker", "moved"), expired);
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void timersScheduledBeforeStartExpireOnceStarted() throws InterruptedException {
+        wheel.schedule("early", 0);
+        Thread.sleep(3 * TICK_MS);
+        assertTrue(expired.isEmpty());
+        wheel.start();
+        awaitExpired(1);
+        assertEquals(List.of("early"), expired);
+        assertTrue(wheel.getMaxExpiryLatencyMs() >= 0);
+    }
+}
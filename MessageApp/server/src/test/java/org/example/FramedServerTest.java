@@ -0,0 +1,93 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FramedServerTest {
+    private static final int DIFFICULTY = 17;
+
+    private FramedServer server;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Only getDifficulty is called by these tests
+        BulletinBoard board = (BulletinBoard) Proxy.newProxyInstance(BulletinBoard.class.getClassLoader(),
+                new Class<?>[]{BulletinBoard.class}, (proxy, method, args) -> DIFFICULTY);
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        System.setProperty("bulletin.nio.maxConnections", "2");
+        try {
+            server = new FramedServer(board, port);
+        } finally {
+            System.clearProperty("bulletin.nio.maxConnections");
+        }
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    void connectionBeyondTheLimitIsClosedUntilAnotherOneCloses() throws Exception {
+        SocketChannel first = connect();
+        SocketChannel second = connect();
+        assertEquals(DIFFICULTY, difficulty(first));
+        assertEquals(DIFFICULTY, difficulty(second));
+
+        try (SocketChannel third = connect()) {
+            assertThrows(IOException.class, () -> difficulty(third));
+        }
+
+        first.close();
+        // The server notices the close on its next read, so the freed place shows up shortly after
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try (SocketChannel next = connect()) {
+                assertEquals(DIFFICULTY, difficulty(next));
+                break;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(20);
+            }
+        }
+        second.close();
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(new InetSocketAddress("localhost", port));
+    }
+
+    // Sends a GET_DIFFICULTY frame and reads the answer; throws once the server closed the connection
+    private static int difficulty(SocketChannel channel) throws IOException {
+        ByteBuffer request = new FrameCodec.Writer(1, FrameCodec.GET_DIFFICULTY).finish();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+        ByteBuffer length = readFully(channel, ByteBuffer.allocate(FrameCodec.LENGTH_BYTES));
+        FrameCodec.Frame frame = FrameCodec.decode(readFully(channel, ByteBuffer.allocate(length.getInt())));
+        assertEquals(FrameCodec.OK, frame.type());
+        return frame.payload().getInt();
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Connection closed by the server");
+        }
+        return buffer.flip();
+    }
+}
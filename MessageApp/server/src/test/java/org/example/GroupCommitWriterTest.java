@@ -0,0 +1,163 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupCommitWriterTest {
+    private final TagSetStore store = new TagSetStore();
+    private final GroupCommitWriter writer = new GroupCommitWriter(store);
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void duplicateTagIsAnsweredWithoutALocator() {
+        MessageStore.PersistedMessage msg = new MessageStore.PersistedMessage(1L, 1, 1024, "dup", new byte[]{1});
+        assertTrue(writer.save(msg) != MessageStore.NO_LOCATOR);
+        assertEquals(MessageStore.NO_LOCATOR, writer.save(msg));
+    }
+
+    @Test
+    void failedCommitIsRethrownToItsCallers() {
+        RuntimeException failure = new IllegalStateException("disk full");
+        store.failure = failure;
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> writer.save(new MessageStore.PersistedMessage(1L, 1, 1024, "a", new byte[]{1}))));
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> writer.deleteAll(List.of(new ConfirmRequest(1L, "a")))));
+    }
+
+    @Test
+    void listenerOnlySeesStoredInserts() {
+        List<String> committed = new CopyOnWriteArrayList<>();
+        writer.setCommitListener((saves, deletes) -> {
+            saves.forEach(msg -> committed.add(msg.messageTag()));
+            deletes.forEach(delete -> committed.add("-" + delete.tag()));
+        });
+        MessageStore.PersistedMessage a = new MessageStore.PersistedMessage(1L, 1, 1024, "a", new byte[]{1});
+        writer.saveAll(List.of(a, new MessageStore.PersistedMessage(2L, 2, 1024, "b", new byte[]{2})));
+        writer.save(a);
+        writer.delete(2L, "b");
+        assertEquals(List.of("a", "b", "-b"), committed);
+    }
+
+    @Test
+    void shutdownCommitsWhatIsQueuedThenRefusesNewWrites() {
+        List<CompletableFuture<Long>> queued = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            queued.add(writer.saveAsync(new MessageStore.PersistedMessage(i, i, 1024, "m" + i, new byte[]{1})));
+        }
+        writer.shutdown();
+        queued.forEach(save -> assertTrue(save.isDone() && !save.isCompletedExceptionally()));
+        assertEquals(100, store.tags.size());
+        assertThrows(IllegalStateException.class, () -> writer.saveAsync(new MessageStore.PersistedMessage(0L, 0, 1024, "late", new byte[]{1})));
+    }
+
+    @Test
+    void confirmQueuedBehindItsAddDeletesTheMessage() throws Exception {
+        // The first write holds up the writer thread, so the add and the confirm after it are drained together
+        store.hold = new CountDownLatch(1);
+        CompletableFuture<Long> first = writer.saveAsync(new MessageStore.PersistedMessage(1L, 1, 1024, "first", new byte[]{1}));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<Long> added = writer.saveAsync(new MessageStore.PersistedMessage(2L, 2, 1024, "a", new byte[]{2}));
+        Thread confirm = Thread.ofVirtual().start(() -> writer.delete(2L, "a"));
+        deadline = System.currentTimeMillis() + 5000;
+        while (writer.getQueueDepth() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        store.hold.countDown();
+
+        confirm.join();
+        assertTrue(writer.await(first) != MessageStore.NO_LOCATOR);
+        assertTrue(writer.await(added) != MessageStore.NO_LOCATOR);
+        assertEquals(List.of("first"), store.tags);
+    }
+
+    @Test
+    void everyWriteRacingShutdownIsCommittedOrRefused() throws Exception {
+        List<CompletableFuture<Long>> accepted = new CopyOnWriteArrayList<>();
+        AtomicInteger next = new AtomicInteger();
+        List<Thread> callers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            callers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    while (true) {
+                        int n = next.incrementAndGet();
+                        accepted.add(writer.saveAsync(new MessageStore.PersistedMessage(n, n, 1024, "m" + n, new byte[]{1})));
+                    }
+                } catch (IllegalStateException e) {
+                    // shut down
+                }
+            }));
+        }
+        Thread.sleep(50);
+        writer.shutdown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        accepted.forEach(save -> assertTrue(save.isDone()));
+        assertEquals(accepted.size(), store.tags.size());
+    }
+
+    // Keeps only the stored tags and refuses duplicates, like the real engines
+    private static final class TagSetStore implements MessageStore {
+        final List<String> tags = new CopyOnWriteArrayList<>();
+        volatile RuntimeException failure;
+        volatile CountDownLatch hold;
+
+        @Override
+        public long[] writeBatch(List<PersistedMessage> saves, List<String> deleteTags, List<Relocation> relocations) {
+            if (failure != null) throw failure;
+            CountDownLatch held = hold;
+            if (held != null) {
+                try {
+                    held.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            tags.removeAll(deleteTags);
+            long[] locators = new long[saves.size()];
+            for (int i = 0; i < saves.size(); i++) {
+                String tag = saves.get(i).messageTag();
+                locators[i] = tags.contains(tag) ? NO_LOCATOR : tags.size() + 1;
+                if (locators[i] != NO_LOCATOR) tags.add(tag);
+            }
+            return locators;
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void streamMessages(int partition, int partitionCount, boolean withValues, Consumer<PersistedMessage> consumer) {
+        }
+
+        @Override
+        public byte[] readValue(String messageTag, long locator) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
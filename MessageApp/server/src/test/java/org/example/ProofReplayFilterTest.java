@@ -0,0 +1,44 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProofReplayFilterTest {
+
+    @Test
+    void recordedMessageIsSeenAtItsIndexOnly() {
+        ProofReplayFilter filter = new ProofReplayFilter();
+        assertFalse(filter.seen("tag", 1L));
+        filter.record("tag", 1L);
+        assertTrue(filter.seen("tag", 1L));
+        assertFalse(filter.seen("tag", 2L));
+        assertFalse(filter.seen("other", 1L));
+        assertEquals(1, filter.getHits());
+        assertEquals(3, filter.getMisses());
+    }
+
+    @Test
+    void entriesSurviveOneRotation() throws InterruptedException {
+        System.setProperty("bulletin.replay.windowMs", "50");
+        ProofReplayFilter filter;
+        try {
+            filter = new ProofReplayFilter();
+        } finally {
+            System.clearProperty("bulletin.replay.windowMs");
+        }
+        filter.record("first", 1L);
+        // A record after the window rotates the current table into the previous one
+        Thread.sleep(60);
+        filter.record("second", 2L);
+        assertTrue(filter.seen("first", 1L));
+
+        Thread.sleep(60);
+        filter.record("third", 3L);
+        assertFalse(filter.seen("first", 1L));
+        assertTrue(filter.seen("second", 2L));
+        assertTrue(filter.seen("third", 3L));
+    }
+}
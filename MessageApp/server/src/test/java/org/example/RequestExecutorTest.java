@@ -0,0 +1,70 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestExecutorTest {
+
+    @Test
+    void platformCallersCountAsPendingAndAreRejectedWhenFull() throws Exception {
+        RequestExecutor executor = new RequestExecutor(1, 4);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Stands in for an RMI connection thread
+        Thread caller = Thread.ofPlatform().start(() -> {
+            try {
+                executor.call(() -> {
+                    running.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getPending());
+        assertEquals(0, executor.getQueueDepth());
+
+        assertThrows(RejectedExecutionException.class, () -> executor.call(() -> true));
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        caller.join();
+        assertEquals(0, executor.getPending());
+    }
+
+    @Test
+    void virtualCallersWaitForASlot() throws Exception {
+        RequestExecutor executor = new RequestExecutor(1, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = Thread.ofVirtual().start(() -> call(executor, release));
+        Thread second = Thread.ofVirtual().start(() -> call(executor, release));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, executor.getInFlight());
+        assertEquals(2, executor.getPending());
+
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(0, executor.getPending());
+        assertEquals(0, executor.getRejectedCount());
+    }
+
+    private static void call(RequestExecutor executor, CountDownLatch release) {
+        try {
+            executor.call(() -> release.await(5, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogStoreTest {
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int HEADER_SIZE = 9;
+    private static final byte TYPE_PUT_BYTE = 1;
+
+    @TempDir
+    Path dir;
+
+    private SegmentLogStore open() {
+        SegmentLogStore store = new SegmentLogStore(dir, SEGMENT_SIZE);
+        store.initialize();
+        return store;
+    }
+
+    private static List<String> storedTags(MessageStore store) {
+        List<String> tags = new ArrayList<>();
+        store.streamMessages(0, 1, false, msg -> tags.add(msg.messageTag()));
+        tags.sort(null);
+        return tags;
+    }
+
+    // Overwrites bytes of a written record, as a crash in the middle of its write would leave them
+    private void corrupt(long locator, int offsetInRecord, byte value) throws IOException {
+        Path file = dir.resolve(String.format("segment-%06d.log", (int) (locator >>> 32)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{value}), (int) locator + offsetInRecord);
+        }
+    }
+
+    private static List<MessageStore.PersistedMessage> threeMessages() {
+        return List.of(
+                new MessageStore.PersistedMessage(10L, 10, 1024, "a", "first".getBytes()),
+                new MessageStore.PersistedMessage(11L, 11, 1024, "b", "second".getBytes()),
+                new MessageStore.PersistedMessage(12L, 12, 1024, "c", "third".getBytes()));
+    }
+
+    @Test
+    void recoveryStopsAtARecordWhoseChecksumFails() throws IOException {
+        SegmentLogStore store = open();
+        long[] locators = store.writeBatch(threeMessages(), List.of(), List.of());
+        store.close();
+        corrupt(locators[1], HEADER_SIZE + 12, (byte) 'X');
+
+        SegmentLogStore recovered = open();
+        assertEquals(List.of("a"), storedTags(recovered));
+        assertNull(recovered.readValue("b", MessageStore.NO_LOCATOR));
+
+        // The next append reuses the torn space and survives another restart
+        recovered.writeBatch(List.of(new MessageStore.PersistedMessage(13L, 13, 1024, "d", "fourth".getBytes())), List.of(), List.of());
+        recovered.close();
+        SegmentLogStore reopened = open();
+        assertEquals(List.of("a", "d"), storedTags(reopened));
+        assertArrayEquals("fourth".getBytes(), reopened.readValue("d", MessageStore.NO_LOCATOR));
+        reopened.close();
+    }
+
+    @Test
+    void recordWithoutItsTypeByteEndsTheLog() throws IOException {
+        SegmentLogStore store = open();
+        long[] locators = store.writeBatch(threeMessages(), List.of(), List.of());
+        store.close();
+        // The type byte is written last, so a crash before it leaves the record and everything after it unwritten
+        corrupt(locators[1], 0, (byte) 0);
+
+        SegmentLogStore recovered = open();
+        assertEquals(List.of("a"), storedTags(recovered));
+        recovered.close();
+    }
+
+    @Test
+    void deletesAndRelocationsSurviveReplay() {
+        SegmentLogStore store = open();
+        store.writeBatch(threeMessages(), List.of(), List.of());
+        store.writeBatch(List.of(), List.of("a"), List.of(new MessageStore.Relocation("b", 7, 2048)));
+        store.close();
+
+        SegmentLogStore reopened = open();
+        List<MessageStore.PersistedMessage> loaded = new ArrayList<>();
+        reopened.streamMessages(0, 1, true, loaded::add);
+        assertEquals(List.of("b", "c"), storedTags(reopened));
+        MessageStore.PersistedMessage moved = loaded.stream().filter(msg -> msg.messageTag().equals("b")).findFirst().orElseThrow();
+        assertEquals(7, moved.cellIndex());
+        assertEquals(2048, moved.boardCapacity());
+        assertEquals(11L, moved.idx());
+        assertArrayEquals("second".getBytes(), moved.messageValue());
+        reopened.close();
+    }
+
+    @Test
+    void compactionShrinksSealedSegmentsWithoutResurrectingDeletes() throws IOException {
+        SegmentLogStore store = open();
+        List<String> deletes = new ArrayList<>();
+        for (int n = 0; n < 200; n++) {
+            store.writeBatch(List.of(new MessageStore.PersistedMessage(n, n, 1024, "tag" + n, new byte[40])), List.of(), List.of());
+            if (n % 10 != 0) deletes.add("tag" + n);
+        }
+        store.writeBatch(List.of(), deletes, List.of());
+        long bytesBefore = directorySize();
+
+        store.compactSealedSegments();
+        assertTrue(directorySize() < bytesBefore);
+        assertArrayEquals(new byte[40], store.readValue("tag0", MessageStore.NO_LOCATOR));
+        // Writes after the swap go on in the active segment and see the compacted records
+        store.writeBatch(List.of(), List.of("tag10"), List.of(new MessageStore.Relocation("tag20", 3, 2048)));
+        store.close();
+
+        SegmentLogStore reopened = open();
+        List<String> expected = new ArrayList<>();
+        for (int n = 0; n < 200; n += 10) {
+            if (n != 10) expected.add("tag" + n);
+        }
+        expected.sort(null);
+        assertEquals(expected, storedTags(reopened));
+        assertArrayEquals(new byte[40], reopened.readValue("tag20", MessageStore.NO_LOCATOR));
+        reopened.close();
+    }
+
+    @Test
+    void deadSegmentIsDeletedAndAnUnfinishedCopyIsDroppedOnOpen() throws IOException {
+        SegmentLogStore store = open();
+        List<String> tags = new ArrayList<>();
+        for (int n = 0; n < 100; n++) {
+            store.writeBatch(List.of(new MessageStore.PersistedMessage(n, n, 1024, "tag" + n, new byte[40])), List.of(), List.of());
+            tags.add("tag" + n);
+        }
+        store.writeBatch(List.of(), tags, List.of());
+        long segmentsBefore = fileCount();
+        store.compactSealedSegments();
+        assertTrue(fileCount() < segmentsBefore);
+        store.close();
+
+        Files.write(dir.resolve("segment-000001.log.compact"), new byte[]{TYPE_PUT_BYTE});
+        SegmentLogStore reopened = open();
+        assertEquals(List.of(), storedTags(reopened));
+        assertTrue(Files.notExists(dir.resolve("segment-000001.log.compact")));
+        reopened.close();
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private long directorySize() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            long total = 0;
+            for (Path file : files.toList()) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+}
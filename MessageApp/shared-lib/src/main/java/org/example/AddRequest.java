@@ -0,0 +1,6 @@
+package org.example;
+
+import java.io.Serializable;
+
+public record AddRequest(long idx, byte[] value, String tag, long nonce) implements Serializable {
+}
@@ -2,10 +2,28 @@ package org.example;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface BulletinBoard extends Remote {
     boolean add(long idx, byte[] value, String tag, long nonce) throws RemoteException;
 
+    // The proof-of-work difficulty, in leading zero bits, that add currently asks for. It follows the server's load.
+    int getDifficulty() throws RemoteException;
+
     Pair get(long idx, String preimage) throws RemoteException;
     boolean confirm(long idx, String tag) throws RemoteException;
+
+    // Like get, but if the message is not there yet the call waits until it arrives or timeoutMs passes.
+    // Servers cap the wait; null means nothing arrived in time.
+    Pair getOrWait(long idx, String preimage, long timeoutMs) throws RemoteException;
+
+    // Push delivery. The listener is notified once for each tag (the hash, not the preimage) as soon as a message
+    // with that tag is on the board. Returns false if the server takes no more subscriptions; keep polling then.
+    boolean subscribe(List<String> tags, DeliveryListener listener) throws RemoteException;
+    void unsubscribe(DeliveryListener listener) throws RemoteException;
+
+    // Batched variants, one round trip for many messages. Results are positional (null in getBatch means not found).
+    boolean[] addBatch(List<AddRequest> requests) throws RemoteException;
+    List<Pair> getBatch(List<GetRequest> requests) throws RemoteException;
+    boolean[] confirmBatch(List<ConfirmRequest> requests) throws RemoteException;
 }
@@ -0,0 +1,14 @@
+package org.example;
+
+// Lets one thread ask a long-running computation on another thread, such as a proof-of-work search, to stop.
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
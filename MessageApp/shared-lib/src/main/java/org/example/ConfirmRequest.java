@@ -0,0 +1,6 @@
+package org.example;
+
+import java.io.Serializable;
+
+public record ConfirmRequest(long idx, String tag) implements Serializable {
+}
@@ -0,0 +1,11 @@
+package org.example;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Callback a client exports to be told when messages it subscribed to are on the board.
+public interface DeliveryListener extends Remote {
+    // The tags (hashes, as returned in Pair) that now have a message waiting. Each subscription fires once.
+    void messagesAvailable(List<String> tags) throws RemoteException;
+}
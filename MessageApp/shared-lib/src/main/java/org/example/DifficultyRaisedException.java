@@ -0,0 +1,18 @@
+package org.example;
+
+import java.rmi.RemoteException;
+
+// Thrown by add when the proof is valid for a difficulty the server no longer accepts. The client should take
+// requiredBits as the server's current difficulty and solve again; any other refusal is answered with false.
+public class DifficultyRaisedException extends RemoteException {
+    private final int requiredBits;
+
+    public DifficultyRaisedException(int requiredBits) {
+        super("Proof-of-work difficulty is now " + requiredBits + " bits");
+        this.requiredBits = requiredBits;
+    }
+
+    public int requiredBits() {
+        return requiredBits;
+    }
+}
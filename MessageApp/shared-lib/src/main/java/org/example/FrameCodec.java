@@ -0,0 +1,160 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Length-prefixed binary framing for the non-RMI transport. Every frame is
+//   int length | int requestId | byte type | payload
+// where length counts everything after itself. Requests carry an opcode as type, responses a status and the
+// request id they answer, so several calls can be in flight on one connection. Numbers are big-endian; byte
+// arrays and strings are an int length followed by the bytes (UTF-8 for strings), with length -1 for null.
+public final class FrameCodec {
+    public static final int LENGTH_BYTES = 4;
+    public static final int HEADER_BYTES = 5; // request id and type
+    public static final int MAX_FRAME_BYTES = 16 << 20;
+
+    // --- Request opcodes ---
+    public static final byte ADD = 1;
+    public static final byte GET = 2;
+    public static final byte CONFIRM = 3;
+    public static final byte GET_OR_WAIT = 4;
+    public static final byte ADD_BATCH = 5;
+    public static final byte GET_BATCH = 6;
+    public static final byte CONFIRM_BATCH = 7;
+    public static final byte GET_DIFFICULTY = 8;
+
+    // --- Response statuses ---
+    public static final byte OK = 0;
+    public static final byte ERROR = 1; // payload is the error message
+    public static final byte DIFFICULTY_RAISED = 2; // payload is the difficulty now required
+
+    // A received frame without its length prefix
+    public record Frame(int requestId, byte type, ByteBuffer payload) {}
+
+    private FrameCodec() {}
+
+    // Parses a frame body, i.e. everything after the length prefix.
+    public static Frame decode(ByteBuffer body) {
+        int requestId = body.getInt();
+        byte type = body.get();
+        return new Frame(requestId, type, body.slice());
+    }
+
+    // The length comes from the peer, so it is checked against the frame before anything is allocated.
+    public static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) return null;
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid field length " + length + " with " + buffer.remaining() + " bytes left in the frame");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        byte[] bytes = getBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static boolean getBoolean(ByteBuffer buffer) {
+        return buffer.get() != 0;
+    }
+
+    public static Pair getPair(ByteBuffer buffer) {
+        if (!getBoolean(buffer)) return null;
+        return new Pair(getBytes(buffer), getString(buffer));
+    }
+
+    public static AddRequest getAddRequest(ByteBuffer buffer) {
+        return new AddRequest(buffer.getLong(), getBytes(buffer), getString(buffer), buffer.getLong());
+    }
+
+    public static GetRequest getGetRequest(ByteBuffer buffer) {
+        return new GetRequest(buffer.getLong(), getString(buffer));
+    }
+
+    public static ConfirmRequest getConfirmRequest(ByteBuffer buffer) {
+        return new ConfirmRequest(buffer.getLong(), getString(buffer));
+    }
+
+    // Builds one outgoing frame. finish() fills in the length and returns the buffer ready for writing.
+    public static final class Writer {
+        private final int requestId;
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        public Writer(int requestId, byte type) {
+            this.requestId = requestId;
+            buffer.position(LENGTH_BYTES);
+            buffer.putInt(requestId).put(type);
+        }
+
+        public int requestId() {
+            return requestId;
+        }
+
+        public Writer putInt(int value) {
+            ensure(Integer.BYTES).putInt(value);
+            return this;
+        }
+
+        public Writer putLong(long value) {
+            ensure(Long.BYTES).putLong(value);
+            return this;
+        }
+
+        public Writer putBoolean(boolean value) {
+            ensure(1).put((byte) (value ? 1 : 0));
+            return this;
+        }
+
+        public Writer putBytes(byte[] bytes) {
+            if (bytes == null) return putInt(-1);
+            ensure(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes);
+            return this;
+        }
+
+        public Writer putString(String value) {
+            return putBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public Writer putPair(Pair pair) {
+            putBoolean(pair != null);
+            if (pair != null) {
+                putBytes(pair.value()).putString(pair.tag());
+            }
+            return this;
+        }
+
+        public Writer putAddRequest(AddRequest request) {
+            return putLong(request.idx()).putBytes(request.value()).putString(request.tag()).putLong(request.nonce());
+        }
+
+        public Writer putGetRequest(GetRequest request) {
+            return putLong(request.idx()).putString(request.preimage());
+        }
+
+        public Writer putConfirmRequest(ConfirmRequest request) {
+            return putLong(request.idx()).putString(request.tag());
+        }
+
+        public ByteBuffer finish() {
+            int length = buffer.position() - LENGTH_BYTES;
+            if (length > MAX_FRAME_BYTES) {
+                throw new IllegalArgumentException("Frame of " + length + " bytes exceeds the limit");
+            }
+            buffer.putInt(0, length);
+            return buffer.flip();
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            return buffer;
+        }
+    }
+}
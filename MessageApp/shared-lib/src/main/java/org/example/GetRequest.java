@@ -0,0 +1,6 @@
+package org.example;
+
+import java.io.Serializable;
+
+public record GetRequest(long idx, String preimage) implements Serializable {
+}
@@ -1,10 +1,22 @@
 package org.example;
 
-import java.nio.ByteBuffer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ProofOfWork {
 
@@ -20,10 +32,31 @@ public class ProofOfWork {
      Tested on i7-11800H, 22 bits provides a good
      balance between DDoS protection (~244ms computation) and user experience.
      Since a i7-11800H is fairly powerful we choose for 22 bits.
+     Servers now adapt the difficulty to their load (see BulletinBoard.getDifficulty);
+     this is the value they start from.
      */
     public static final int DIFFICULTY_BITS = 22;
 
+    // Threads a search may use unless the caller passes its own budget
+    public static final int DEFAULT_THREADS = Integer.getInteger("bulletin.pow.threads", Runtime.getRuntime().availableProcessors());
+    // How many hashes a worker tries between checks for a winner or a cancellation
+    private static final int CHECK_INTERVAL = 4096;
+    // Returned by a worker that stopped without a result; this nonce value itself is never accepted
+    private static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private static final int HASH_BYTES = 32;
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
     private static final SecureRandom random = new SecureRandom();
+    private static final Queue<MessageDigest> verifyDigests = new ConcurrentLinkedQueue<>();
+
+    // Shared by all searches; workers are daemons so a running search never keeps the JVM alive
+    private static final ExecutorService solverPool = Executors.newFixedThreadPool(DEFAULT_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "PoW-Solver-Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public record ProofResult(long nonce, long computationTimeMs) {}
 
@@ -32,37 +65,99 @@ public class ProofOfWork {
     }
 
     public static ProofResult computeProof(String tag, long idx, int difficultyBits) {
+        return computeProof(tag, idx, difficultyBits, DEFAULT_THREADS, new CancellationToken());
+    }
+
+    // Searches with up to `threads` workers, which all stop as soon as one finds a nonce. Worker i tries
+    // start + i, start + i + threads, ..., so the workers never hash the same nonce.
+    // Throws CancellationException once the token is cancelled.
+    public static ProofResult computeProof(String tag, long idx, int difficultyBits, int threads, CancellationToken cancellation) {
         long startTime = System.currentTimeMillis();
 
         // Start with a random nonce to avoid collisions when multiple clients compute simultaneously
-        long nonce = random.nextLong();
+        long start = random.nextLong();
 
         byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
-        ByteBuffer idxBuffer = ByteBuffer.allocate(Long.BYTES);
-        idxBuffer.putLong(idx);
-        byte[] idxBytes = idxBuffer.array();
 
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-            while (true) {
-                digest.reset();
-                digest.update(tagBytes);
-                digest.update(idxBytes);
-                ByteBuffer nonceBuffer = ByteBuffer.allocate(Long.BYTES);
-                nonceBuffer.putLong(nonce);
-                digest.update(nonceBuffer.array());
-                byte[] hash = digest.digest();
-                // Check if hash meets difficulty requirement and return result if so
-                if (hasLeadingZeros(hash, difficultyBits)) {
-                    long endTime = System.currentTimeMillis();
-                    return new ProofResult(nonce, endTime - startTime);
+        int workers = Math.clamp(threads, 1, DEFAULT_THREADS);
+        AtomicBoolean found = new AtomicBoolean();
+        if (workers == 1) {
+            long nonce = search(tagBytes, idx, difficultyBits, start, 1, found, cancellation);
+            if (nonce == NOT_FOUND) throw new CancellationException("Proof-of-work search cancelled");
+            return new ProofResult(nonce, System.currentTimeMillis() - startTime);
+        }
+
+        CompletableFuture<Long> winner = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            long first = start + i;
+            solverPool.execute(() -> {
+                try {
+                    long nonce = search(tagBytes, idx, difficultyBits, first, workers, found, cancellation);
+                    if (nonce != NOT_FOUND) {
+                        winner.complete(nonce);
+                    }
+                } catch (RuntimeException e) {
+                    winner.completeExceptionally(e);
+                    found.set(true);
+                } finally {
+                    // The last worker out without a nonce means the search was cancelled
+                    if (running.decrementAndGet() == 0) {
+                        winner.cancel(false);
+                    }
                 }
+            });
+        }
+        long nonce = winner.join();
+        return new ProofResult(nonce, System.currentTimeMillis() - startTime);
+    }
 
-                nonce++;
+    // The nonce search itself. Gives up, returning NOT_FOUND, once another worker won or the token is cancelled.
+    private static long search(byte[] tagBytes, long idx, int difficultyBits, long nonce, int step,
+                               AtomicBoolean found, CancellationToken cancellation) {
+        NonceHasher hasher = new NonceHasher(tagBytes, idx);
+        for (long attempts = 1; ; attempts++) {
+            // Check if hash meets difficulty requirement and claim the win if so
+            if (nonce != NOT_FOUND && hasLeadingZeros(hasher.hash(nonce), difficultyBits) && found.compareAndSet(false, true)) {
+                return nonce;
             }
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not available", e);
+            if (attempts % CHECK_INTERVAL == 0 && (found.get() || cancellation.isCancelled())) {
+                return NOT_FOUND;
+            }
+
+            nonce += step;
+        }
+    }
+
+    // Hashes tag || idx || nonce for one worker without allocating. The input is laid out once and each
+    // attempt only overwrites the trailing nonce, then the digest writes into a reused output array.
+    // The input is a 44-byte base64 tag, the index and the nonce: 60 bytes. With the 0x80 pad byte and the
+    // 8-byte length that is more than one 64-byte block, so each attempt costs two SHA-256 compressions.
+    // Neither can be precomputed: the nonce sits at bytes 52-59, inside the first block, and the second block
+    // (padding and length only) is chained onto the first block's output. A cloned midstate only pays off for a
+    // fixed prefix of a whole block, which this layout does not have, and changing the layout would change
+    // every proof the servers verify.
+    private static final class NonceHasher {
+        private final MessageDigest digest = newDigest();
+        private final byte[] input;
+        private final int nonceOffset;
+        private final byte[] hash = new byte[HASH_BYTES];
+
+        NonceHasher(byte[] tagBytes, long idx) {
+            input = Arrays.copyOf(tagBytes, tagBytes.length + 2 * Long.BYTES);
+            LONG_BE.set(input, tagBytes.length, idx);
+            nonceOffset = tagBytes.length + Long.BYTES;
+        }
+
+        byte[] hash(long nonce) {
+            LONG_BE.set(input, nonceOffset, nonce);
+            digest.update(input);
+            try {
+                digest.digest(hash, 0, HASH_BYTES);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return hash;
         }
     }
 
@@ -71,47 +166,40 @@ public class ProofOfWork {
     }
 
     public static boolean verifyProof(String tag, long idx, long nonce, int difficultyBits) {
+        byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
+        byte[] input = Arrays.copyOf(tagBytes, tagBytes.length + 2 * Long.BYTES);
+        LONG_BE.set(input, tagBytes.length, idx);
+        LONG_BE.set(input, tagBytes.length + Long.BYTES, nonce);
+
+        // Server requests run on virtual threads, which a ThreadLocal would give a fresh digest every time,
+        // so verification borrows from a shared pool instead
+        MessageDigest digest = verifyDigests.poll();
+        if (digest == null) {
+            digest = newDigest();
+        }
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-            byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
-            ByteBuffer idxBuffer = ByteBuffer.allocate(Long.BYTES);
-            idxBuffer.putLong(idx);
-            byte[] idxBytes = idxBuffer.array();
-
-            ByteBuffer nonceBuffer = ByteBuffer.allocate(Long.BYTES);
-            nonceBuffer.putLong(nonce);
-            byte[] nonceBytes = nonceBuffer.array();
-
-            digest.update(tagBytes);
-            digest.update(idxBytes);
-            digest.update(nonceBytes);
-
-            byte[] hash = digest.digest();
-
-            return hasLeadingZeros(hash, difficultyBits);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not available", e);
+            return hasLeadingZeros(digest.digest(input), difficultyBits);
+        } finally {
+            verifyDigests.offer(digest);
         }
     }
 
+    // Compares four hash bytes at a time
     private static boolean hasLeadingZeros(byte[] hash, int numBits) {
-        int fullBytes = numBits / 8;
-        int remainingBits = numBits % 8;
-
-        // Check full bytes (must all be zero)
-        for (int i = 0; i < fullBytes; i++) {
-            if (hash[i] != 0) {
+        int offset = 0;
+        for (; numBits >= Integer.SIZE; numBits -= Integer.SIZE, offset += Integer.BYTES) {
+            if ((int) INT_BE.get(hash, offset) != 0) {
                 return false;
             }
         }
-        // Check remaining bits in the next byte
-        if (remainingBits > 0 && fullBytes < hash.length) {
-            int mask = 0xFF << (8 - remainingBits);
-            return (hash[fullBytes] & mask) == 0;
-        }
+        return numBits == 0 || Integer.numberOfLeadingZeros((int) INT_BE.get(hash, offset)) >= numBits;
+    }
 
-        return true;
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
     }
 }
-
@@ -0,0 +1,10 @@
+package org.example;
+
+import java.io.Serializable;
+
+// One committed change shipped from a primary to its replica: an add when value is set, a confirm when it is null.
+public record ReplicatedChange(long idx, String tag, byte[] value) implements Serializable {
+    public boolean isDelete() {
+        return value == null;
+    }
+}
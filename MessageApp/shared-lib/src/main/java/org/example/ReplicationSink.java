@@ -0,0 +1,16 @@
+package org.example;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Exported by a replica server; its primary pushes every committed add and confirm to it.
+public interface ReplicationSink extends Remote {
+    // Applies changes in commit order. Applying a change twice is harmless.
+    void apply(List<ReplicatedChange> changes) throws RemoteException;
+
+    // A full resync after the replica was out of reach. Every message the primary holds arrives through apply
+    // between these calls; endSnapshot then drops whatever the replica has that the primary no longer has.
+    void beginSnapshot() throws RemoteException;
+    void endSnapshot() throws RemoteException;
+}
@@ -0,0 +1,136 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Consistent-hash ring that maps a board index to the server responsible for it. Every shard sits on the ring at
+// a number of pseudo-random points (virtual nodes) and an index belongs to the first point at or after its hash.
+// Adding or removing a shard only moves the indices next to its points, about 1/N of them, instead of reshuffling
+// everything like idx % N does. Clients and servers build the ring from the same configuration:
+// -Dbulletin.shards (comma-separated host:port list) and -Dbulletin.shards.virtualNodes.
+// Without -Dbulletin.shards the map keeps the original idx % 2 routing over the two default servers, so
+// messages stored before the ring existed stay where clients look for them. Moving to an explicit map
+// changes the routing, and ShardRebalancer has to move the stored messages.
+public final class ShardMap {
+    public static final String DEFAULT_SHARDS = "localhost:1099,localhost:1100";
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<Shard> shards;
+    // Ring positions in ascending order, with the shard owning each one; empty for idx % N routing
+    private final long[] points;
+    private final Shard[] owners;
+
+    public record Shard(String host, int port) {
+        public static Shard parse(String spec) {
+            int colon = spec.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Shard must be host:port, got: " + spec);
+            }
+            return new Shard(spec.substring(0, colon).trim(), Integer.parseInt(spec.substring(colon + 1).trim()));
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    private record Point(long position, Shard shard) {}
+
+    public ShardMap(List<Shard> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A shard map needs at least one shard and one virtual node");
+        }
+        this.shards = List.copyOf(shards);
+
+        List<Point> ring = new ArrayList<>(shards.size() * virtualNodes);
+        for (Shard shard : shards) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.add(new Point(hash(shard + "#" + v), shard));
+            }
+        }
+        ring.sort(Comparator.comparingLong(Point::position));
+        this.points = new long[ring.size()];
+        this.owners = new Shard[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            points[i] = ring.get(i).position();
+            owners[i] = ring.get(i).shard();
+        }
+    }
+
+    private ShardMap(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A shard map needs at least one shard");
+        }
+        this.shards = List.copyOf(shards);
+        this.points = new long[0];
+        this.owners = new Shard[0];
+    }
+
+    // Routes idx to shard |idx % N|, as clients did before the ring
+    public static ShardMap modulo(List<Shard> shards) {
+        return new ShardMap(shards);
+    }
+
+    public static ShardMap fromConfig() {
+        String spec = System.getProperty("bulletin.shards");
+        if (spec == null) {
+            return modulo(parseShards(DEFAULT_SHARDS));
+        }
+        return parse(spec, Integer.getInteger("bulletin.shards.virtualNodes", DEFAULT_VIRTUAL_NODES));
+    }
+
+    public static ShardMap parse(String spec, int virtualNodes) {
+        return new ShardMap(parseShards(spec), virtualNodes);
+    }
+
+    private static List<Shard> parseShards(String spec) {
+        List<Shard> shards = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            if (!part.isBlank()) {
+                shards.add(Shard.parse(part));
+            }
+        }
+        return shards;
+    }
+
+    public Shard shardFor(long idx) {
+        if (points.length == 0) {
+            return shards.get((int) Math.abs(idx % shards.size()));
+        }
+        int i = Arrays.binarySearch(points, mix(idx));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<Shard> shards() {
+        return shards;
+    }
+
+    public boolean contains(Shard shard) {
+        return shards.contains(shard);
+    }
+
+    // Indices are random longs already, but a finalizer keeps sequential ones from clustering on the ring
+    private static long mix(long idx) {
+        long z = idx;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+}
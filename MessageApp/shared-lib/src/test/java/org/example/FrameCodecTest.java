@@ -0,0 +1,97 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCodecTest {
+
+    // Strips the length prefix the way a reader does before decoding
+    private static FrameCodec.Frame roundTrip(FrameCodec.Writer writer) {
+        ByteBuffer frame = writer.finish();
+        int length = frame.getInt();
+        assertEquals(frame.remaining(), length);
+        return FrameCodec.decode(frame.slice());
+    }
+
+    @Test
+    void requestFieldsRoundTrip() {
+        AddRequest add = new AddRequest(-42L, new byte[]{1, 2, 3}, "tag", 7L);
+        FrameCodec.Frame frame = roundTrip(new FrameCodec.Writer(9, FrameCodec.ADD_BATCH)
+                .putAddRequest(add)
+                .putGetRequest(new GetRequest(5L, "préimage"))
+                .putConfirmRequest(new ConfirmRequest(6L, "other"))
+                .putBoolean(true)
+                .putString(null)
+                .putBytes(null));
+
+        assertEquals(9, frame.requestId());
+        assertEquals(FrameCodec.ADD_BATCH, frame.type());
+        ByteBuffer payload = frame.payload();
+        AddRequest decoded = FrameCodec.getAddRequest(payload);
+        assertEquals(add.idx(), decoded.idx());
+        assertArrayEquals(add.value(), decoded.value());
+        assertEquals(add.tag(), decoded.tag());
+        assertEquals(add.nonce(), decoded.nonce());
+        assertEquals(new GetRequest(5L, "préimage"), FrameCodec.getGetRequest(payload));
+        assertEquals(new ConfirmRequest(6L, "other"), FrameCodec.getConfirmRequest(payload));
+        assertTrue(FrameCodec.getBoolean(payload));
+        assertNull(FrameCodec.getString(payload));
+        assertNull(FrameCodec.getBytes(payload));
+        assertFalse(payload.hasRemaining());
+    }
+
+    @Test
+    void pairsRoundTripIncludingNull() {
+        FrameCodec.Frame frame = roundTrip(new FrameCodec.Writer(1, FrameCodec.OK)
+                .putPair(new Pair(new byte[]{4, 5}, "t"))
+                .putPair(null));
+
+        Pair pair = FrameCodec.getPair(frame.payload());
+        assertArrayEquals(new byte[]{4, 5}, pair.value());
+        assertEquals("t", pair.tag());
+        assertNull(FrameCodec.getPair(frame.payload()));
+    }
+
+    @Test
+    void writerGrowsPastItsInitialBuffer() {
+        byte[] large = new byte[100_000];
+        large[large.length - 1] = 1;
+        FrameCodec.Frame frame = roundTrip(new FrameCodec.Writer(2, FrameCodec.ADD).putBytes(large).putLong(3L));
+
+        assertArrayEquals(large, FrameCodec.getBytes(frame.payload()));
+        assertEquals(3L, frame.payload().getLong());
+    }
+
+    @Test
+    void fieldLengthBeyondTheFrameIsRejected() {
+        ByteBuffer payload = ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(0).flip();
+        assertThrows(IllegalArgumentException.class, () -> FrameCodec.getBytes(payload));
+    }
+
+    @Test
+    void negativeFieldLengthIsRejected() {
+        ByteBuffer payload = ByteBuffer.allocate(4).putInt(-2).flip();
+        assertThrows(IllegalArgumentException.class, () -> FrameCodec.getBytes(payload));
+    }
+
+    @Test
+    void truncatedFieldIsRejected() {
+        ByteBuffer payload = ByteBuffer.allocate(2).flip();
+        assertThrows(BufferUnderflowException.class, () -> FrameCodec.getConfirmRequest(payload));
+    }
+
+    @Test
+    void oversizedFrameIsRefused() {
+        FrameCodec.Writer writer = new FrameCodec.Writer(3, FrameCodec.ADD).putBytes(new byte[FrameCodec.MAX_FRAME_BYTES]);
+        assertThrows(IllegalArgumentException.class, writer::finish);
+    }
+}
@@ -0,0 +1,80 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProofOfWorkTest {
+    private static final String TAG = Encryption.preimageToTag("preimage");
+
+    @Test
+    void everyThreadBudgetFindsAValidProof() {
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            long nonce = ProofOfWork.computeProof(TAG, 42L, 12, threads, new CancellationToken()).nonce();
+            assertTrue(ProofOfWork.verifyProof(TAG, 42L, nonce, 12), threads + " thread(s)");
+        }
+    }
+
+    @Test
+    void cancelledSearchStops() {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        // 64 bits is never found, so only the cancellation can end the search
+        assertThrows(CancellationException.class, () -> ProofOfWork.computeProof(TAG, 42L, 64, 1, token));
+        assertThrows(CancellationException.class, () -> ProofOfWork.computeProof(TAG, 42L, 64, 4, token));
+    }
+
+    @Test
+    void cancellingARunningSearchStopsItsWorkers() throws Exception {
+        CancellationToken token = new CancellationToken();
+        Thread canceller = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            token.cancel();
+        });
+        assertThrows(CancellationException.class, () -> ProofOfWork.computeProof(TAG, 42L, 64, 4, token));
+        canceller.join();
+        // The pool's workers are free again for the next search
+        long nonce = ProofOfWork.computeProof(TAG, 42L, 12, 4, new CancellationToken()).nonce();
+        assertTrue(ProofOfWork.verifyProof(TAG, 42L, nonce, 12));
+    }
+
+    // Difficulties that stop inside a byte and inside an int, against a plain digest of tag || idx || nonce
+    @Test
+    void searchHasherAgreesWithAPlainDigest() throws NoSuchAlgorithmException {
+        for (int bits : new int[]{7, 12, 17}) {
+            long nonce = ProofOfWork.computeProof(TAG, 42L, bits, 1, new CancellationToken()).nonce();
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(ByteBuffer.allocate(TAG.length() + 2 * Long.BYTES)
+                    .put(TAG.getBytes(StandardCharsets.UTF_8)).putLong(42L).putLong(nonce).array());
+            int zeros = 0;
+            while (zeros < hash.length * 8 && (hash[zeros / 8] & (0x80 >>> (zeros % 8))) == 0) {
+                zeros++;
+            }
+            assertTrue(zeros >= bits, bits + " bits, hash starts with " + zeros + " zero bits");
+            assertEquals(zeros >= bits + 1, ProofOfWork.verifyProof(TAG, 42L, nonce, bits + 1));
+        }
+    }
+
+    @Test
+    void proofIsBoundToTagAndIndex() {
+        long nonce = ProofOfWork.computeProof(TAG, 42L, 16).nonce();
+        // Repeated checks borrow the pooled digests and must give the same answer each time
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ProofOfWork.verifyProof(TAG, 42L, nonce, 16));
+            assertFalse(ProofOfWork.verifyProof(TAG, 43L, nonce, 16));
+            assertFalse(ProofOfWork.verifyProof(Encryption.preimageToTag("other"), 42L, nonce, 16));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardMapTest {
+    private static final ShardMap.Shard A = new ShardMap.Shard("localhost", 1099);
+    private static final ShardMap.Shard B = new ShardMap.Shard("localhost", 1100);
+    private static final ShardMap.Shard C = new ShardMap.Shard("localhost", 1101);
+
+    @Test
+    void defaultMapKeepsModuloRouting() {
+        ShardMap map = ShardMap.fromConfig();
+        assertEquals(List.of(A, B), map.shards());
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long idx = random.nextLong();
+            assertEquals(idx % 2 == 0 ? A : B, map.shardFor(idx));
+        }
+        assertEquals(B, map.shardFor(Long.MIN_VALUE + 1));
+    }
+
+    @Test
+    void ringSpreadsIndicesOverAllShards() {
+        ShardMap map = new ShardMap(List.of(A, B, C), ShardMap.DEFAULT_VIRTUAL_NODES);
+        Map<ShardMap.Shard, Integer> counts = new HashMap<>();
+        for (long idx = 0; idx < 30_000; idx++) {
+            counts.merge(map.shardFor(idx), 1, Integer::sum);
+        }
+        for (ShardMap.Shard shard : List.of(A, B, C)) {
+            assertTrue(counts.get(shard) > 7_000, shard + " got " + counts.get(shard));
+        }
+    }
+
+    @Test
+    void addingAShardOnlyMovesIndicesToIt() {
+        ShardMap before = new ShardMap(List.of(A, B), ShardMap.DEFAULT_VIRTUAL_NODES);
+        ShardMap after = new ShardMap(List.of(A, B, C), ShardMap.DEFAULT_VIRTUAL_NODES);
+        int moved = 0;
+        for (long idx = 0; idx < 30_000; idx++) {
+            ShardMap.Shard owner = after.shardFor(idx);
+            if (owner != before.shardFor(idx)) {
+                assertEquals(C, owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 6_000 && moved < 14_000, "moved " + moved);
+    }
+
+    @Test
+    void parseReadsHostPortList() {
+        ShardMap map = ShardMap.parse(" localhost:1099, localhost:1101 ,", 4);
+        assertEquals(List.of(A, C), map.shards());
+        assertTrue(map.contains(C));
+        assertThrows(IllegalArgumentException.class, () -> ShardMap.parse("localhost", 4));
+        assertThrows(IllegalArgumentException.class, () -> new ShardMap(List.of(A), 0));
+    }
+}